@@ -1,63 +1,1267 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * Manages a collection of events, providing functionality to add, remove, update, view, and sort events.
- * It also maintains a history of past events.
+ * It also maintains a history of past events, and can persist every change to a {@link CalendarStore}.
+ * <p>
+ * A calendar may be shared between threads, such as the user interface, a background
+ * refresh and an import. Changes are made one at a time under an exclusive lock, so checking
+ * an event for conflicts and inserting it happen as one step. Reads share the lock and run in
+ * parallel with each other. The streaming reads over the history and over date ranges only
+ * hold the lock while loading each month.
+ * </p>
+ * <p>
+ * With a store that forces every change to disk, no change is seen before it is durable, but
+ * a writer does not keep the others waiting while its change is forced. The writers that
+ * arrive meanwhile make their changes too, and the readers are let back in, the new version
+ * is published and the listeners are told once a force has committed them all.
+ * </p>
+ * <p>
+ * The active events are also kept in persistent indexes that are never changed in place, and
+ * every change publishes them as a new {@link CalendarVersion}. Lookups by position, ID and
+ * time read the current version and take no lock at all, and a caller holding on to a version
+ * sees one consistent calendar for as long as it likes, whatever changes meanwhile. Recent
+ * versions can be fetched again by number, and recent edits can be undone and redone.
+ * </p>
  */
-public class Calendar {
-    private Map<String, Event> events;
-    private Map<String, Event> history;
+public class Calendar implements Closeable {
+    private static final Comparator<Event> TIME_ORDER = (first, second) -> {
+        // Same order as EventKey.of, without allocating keys
+        int result = Long.compare(first.getStartMillis(), second.getStartMillis());
+        return result != 0 ? result : EventKey.compareIds(first.getId(), second.getId());
+    };
+    private static final Comparator<Event> TITLE_ORDER =
+            Comparator.comparing(Event::getTitle, Comparator.nullsFirst(Comparator.<String>naturalOrder())).thenComparing(TIME_ORDER);
+    private static final Comparator<Event> PRIORITY_ORDER =
+            Comparator.comparing(Event::getPriority, Comparator.nullsFirst(Comparator.<String>naturalOrder())).thenComparing(TIME_ORDER);
+
+    /** How many of the most recent versions {@link #getVersion(long)} can return. */
+    private static final int RETAINED_VERSIONS = 1024;
+    /** How many edits {@link #undo()} can go back. */
+    private static final int UNDO_LIMIT = 100;
+    /** Below this many events a batch is sorted, checked and indexed on the calling thread alone. */
+    private static final int PARALLEL_BATCH = 10_000;
+
+    private IdMap eventsById;
+    private NavigableMap<EventKey, Event> eventsByEnd;
+    private NavigableMap<EventKey, Event> history;
+    private IntervalTree intervals;
+    private Map<String, TrigramIndex> textIndexes;
+    private NavigableSet<Event> eventsByTitle;
+    private NavigableSet<Event> eventsByPriority;
+    private StatisticsIndex statistics;
+    private List<CalendarListener> listeners;
+    private List<CalendarChange> pendingChanges;
+    private final Queue<List<CalendarChange>> unpublished = new ConcurrentLinkedQueue<>();
+    private final StampedLock lock = new StampedLock();
+    private final ReentrantLock writerTurnstile = new ReentrantLock();
+    /** Signalled when a group of writers lets go of the write lock. */
+    private final Condition groupEnded = writerTurnstile.newCondition();
+    /** How many threads are waiting for the read lock, which keeps more writers from joining a group. */
+    private final AtomicInteger waitingReaders = new AtomicInteger();
+    /** The write lock held for the current group of writers, or 0. The fields below are guarded by the turnstile. */
+    private long groupStamp;
+    /** The log records behind the changes made in memory, and those known to be committed. */
+    private long appliedSequence;
+    private long committedSequence;
+    /** What each change made under the group's write lock left, oldest first, until it is committed. */
+    private final Deque<Pending> uncommitted = new ArrayDeque<>();
+    /** Reverts the changes made so far under the write lock that are not committed yet. */
+    private final List<Runnable> reverts = new ArrayList<>();
+    /** The version left by the changes made in memory, ahead of {@link #version} while they are committed. */
+    private CalendarVersion latest;
+    /** The earliest end time of an active event, kept apart so a refresh can check it without locking. */
+    private long firstEndMillis = Long.MAX_VALUE;
+    private volatile CalendarVersion version;
+    private final AtomicReferenceArray<CalendarVersion> recentVersions = new AtomicReferenceArray<>(RETAINED_VERSIONS);
+    private final Deque<Edit> undoStack = new ArrayDeque<>();
+    private final Deque<Edit> redoStack = new ArrayDeque<>();
+    private CalendarStore store;
+    private HistoryArchive archive;
+
+    /**
+     * Constructs an empty calendar, with no active or past events, kept only in memory.
+     */
+    public Calendar() {
+        eventsById = IdMap.EMPTY;
+        eventsByEnd = new TreeMap<>();
+        history = new TreeMap<>();
+        intervals = IntervalTree.EMPTY;
+        textIndexes = new HashMap<>();
+        textIndexes.put("title", new TrigramIndex(Event::getTitle));
+        textIndexes.put("location", new TrigramIndex(Event::getLocation));
+        textIndexes.put("priority", new TrigramIndex(Event::getPriority));
+        textIndexes.put("description", new TrigramIndex(Event::getDescription));
+        eventsByTitle = new TreeSet<>(TITLE_ORDER);
+        eventsByPriority = new TreeSet<>(PRIORITY_ORDER);
+        statistics = new StatisticsIndex();
+        listeners = new CopyOnWriteArrayList<>();
+        pendingChanges = new ArrayList<>();
+        version = new CalendarVersion(0, intervals, eventsById);
+        latest = version;
+        recentVersions.set(0, version);
+    }
+
+    /**
+     * Opens a calendar backed by a durable store, keeping up to
+     * {@value HistoryArchive#DEFAULT_MEMORY_LIMIT} past events in memory.
+     *
+     * @param store the store to recover from and to log every change to
+     * @return the recovered calendar
+     * @throws IOException if the store cannot be read
+     * @see #open(CalendarStore, int)
+     */
+    public static Calendar open(CalendarStore store) throws IOException {
+        return open(store, HistoryArchive.DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * Opens a calendar backed by a durable store. The newest snapshot and the log written
+     * after it are replayed, and a fresh snapshot is taken if the log had to be replayed,
+     * so the next start only has to read a single snapshot. Once more than the given number
+     * of past events are held in memory, the oldest are spilled into on-disk history segments.
+     *
+     * @param store              the store to recover from and to log every change to
+     * @param historyMemoryLimit how many past events to keep in memory
+     * @return the recovered calendar
+     * @throws IOException if the store cannot be read
+     */
+    public static Calendar open(CalendarStore store, int historyMemoryLimit) throws IOException {
+        Calendar calendar = new Calendar();
+        int replayed = store.recover(calendar.new Recovery());
+        calendar.archive = new HistoryArchive(store.getDirectory().resolve("history"), historyMemoryLimit);
+
+        // Drop events whose spill was committed after the snapshot we recovered from
+        Set<EventKey> spilled = calendar.archive.pendingKeys(store.getRecoveredGeneration());
+        for (EventKey key : spilled) {
+            Event event = calendar.history.remove(key);
+            if (event != null) {
+                calendar.statistics.remove(event);
+            }
+        }
+        calendar.archive.addStatistics(calendar.statistics);
+
+        calendar.store = store;
+        if (replayed > 0 || !spilled.isEmpty()) {
+            calendar.snapshot();
+        }
+        calendar.spillHistory();
+        calendar.publishVersion();
+        return calendar;
+    }
+
+    /**
+     * Closes the backing store, if any, after forcing every logged change to disk.
+     *
+     * @throws IOException if the store cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        writeLock();
+        try {
+            if (store != null) {
+                store.close();
+            }
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    /**
+     * Forces every change made so far to the backing store's disk, whatever its
+     * {@link FsyncPolicy}. Does nothing for a calendar kept only in memory.
+     *
+     * @throws IOException if the store cannot be forced
+     */
+    public void sync() throws IOException {
+        if (store != null) {
+            store.force();
+        }
+    }
+
+    /**
+     * Adds a new event to the calendar if there is no conflict with existing events.
+     * An event whose ID is already used by an active event is treated as a conflict, and an
+     * event without an ID is rejected, as {@link #addEvents(Collection)} rejects it.
+     *
+     * @param newEvent the event to add
+     * @return true if the event was added successfully, false if there is a conflict or no ID
+     */
+    public boolean addEvent(Event newEvent) {
+        if (newEvent.getId() == null) {
+            return false;
+        }
+        writeLock();
+        try {
+            if (eventsById.get(newEvent.getId()) != null) {
+                return false;
+            }
+
+            // Check for conflicts with existing events; touching endpoints count as a conflict
+            if (intervals.overlapsAny(newEvent.getStartMillis(), newEvent.getEndMillis())) {
+                return false; // Conflict found
+            }
+
+            // No conflicts, add the event
+            persist(log -> log.logAdd(newEvent));
+            putEvent(newEvent);
+            recordChange(CalendarChange.Type.ADDED, newEvent, null, -1);
+            recordEdit(null, newEvent);
+        } finally {
+            unlockWrite();
+        }
+        publishChanges();
+        return true;
+    }
+
+    /**
+     * Adds a batch of events as {@link #addEvents(Collection, ImportPolicy)} does, adding none
+     * of them if any conflicts.
+     *
+     * @param batch the events to add
+     * @return the number of events added and every conflict found
+     */
+    public ImportReport addEvents(Collection<Event> batch) {
+        return addEvents(batch, ImportPolicy.ALL_OR_NOTHING);
+    }
+
+    /**
+     * Adds a batch of events as one change, checking the whole batch for conflicts in a single
+     * pass instead of one event at a time. The same rules as {@link #addEvent(Event)} apply: an
+     * event may not share its ID with an active event or an earlier event of the batch, and may
+     * not overlap, even at an endpoint, an active event or an earlier event of the batch that
+     * is kept. In addition, an event already in the history with the same start and ID, in
+     * memory or spilled to disk, is rejected as a duplicate, so importing a file of ended events
+     * again adds nothing.
+     * <p>
+     * The batch is sorted by start time once and then swept in step with the active events,
+     * which never overlap each other, so checking m events against n takes O(m log m + n) time,
+     * or O(m log n) for a batch much smaller than the calendar. Large batches are sorted, checked
+     * and indexed on several threads. The history is checked under the read lock, only up to
+     * its latest event; the rest runs against the current version without locking, and is
+     * only repeated under the write lock if another change landed meanwhile.
+     * </p>
+     * <p>
+     * The events added are written to the backing store together and reach the listeners as
+     * one batch of changes. Batches are not recorded for {@link #undo()}, and applying one
+     * clears what {@link #redo()} could restore, as any other edit does.
+     * </p>
+     *
+     * @param batch  the events to add
+     * @param policy whether a conflict rejects the whole batch or only the events concerned
+     * @return the number of events added and every conflict found
+     */
+    public ImportReport addEvents(Collection<Event> batch, ImportPolicy policy) {
+        Event[] sorted = batch.toArray(new Event[0]);
+        boolean parallel = sorted.length >= PARALLEL_BATCH;
+        if (parallel) {
+            Arrays.parallelSort(sorted, TIME_ORDER);
+        } else {
+            Arrays.sort(sorted, TIME_ORDER);
+        }
+
+        // Events only enter the history by leaving the active ones, so the version also vouches for the history
+        CalendarVersion checked;
+        ImportReport.Conflict[] found;
+        long stamp = readLock();
+        try {
+            checked = version;
+            found = findPastEvents(sorted);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        List<Event> accepted = new ArrayList<>();
+        List<ImportReport.Conflict> conflicts = new ArrayList<>();
+        checkBatch(sorted, found, checked.getIntervals(), checked.getEventsById(), parallel, accepted, conflicts);
+        boolean apply;
+        writeLock();
+        try {
+            if (!checked.holds(intervals, eventsById)) {
+                accepted.clear();
+                conflicts.clear();
+                checkBatch(sorted, findPastEvents(sorted), intervals, eventsById, parallel, accepted, conflicts);
+            }
+            apply = !accepted.isEmpty() && (conflicts.isEmpty() || policy == ImportPolicy.SKIP_CONFLICTS);
+            if (apply) {
+                persist(log -> log.logAddAll(accepted));
+                intervals = intervals.insertAll(accepted);
+                indexBatch(accepted, parallel);
+                onRollback(() -> accepted.forEach(this::takeEvent));
+                for (Event event : accepted) {
+                    recordChange(CalendarChange.Type.ADDED, event, null, -1);
+                }
+                redoStack.clear();
+            }
+        } finally {
+            unlockWrite();
+        }
+        publishChanges();
+        return new ImportReport(sorted.length, apply ? accepted.size() : 0, conflicts);
+    }
+
+    /**
+     * Finds the events of a batch that are already in the history, in memory or spilled, with
+     * the same start and ID, as when a file of ended events is imported again. Only the months
+     * up to the latest past event are looked at, and each spilled month at most once. The
+     * caller must hold the lock.
+     *
+     * @param sorted the batch in start-time order
+     * @return the conflicts found, at the positions of their events in the batch
+     * @throws UncheckedIOException if an archived segment cannot be read
+     */
+    private ImportReport.Conflict[] findPastEvents(Event[] sorted) {
+        ImportReport.Conflict[] found = new ImportReport.Conflict[sorted.length];
+        YearMonth lastSpilled = archive == null ? null : archive.lastMonth();
+        long lastPast = history.isEmpty() ? Long.MIN_VALUE : history.lastKey().getTimeMillis();
+        if (lastSpilled != null) {
+            lastPast = Math.max(lastPast, epochMillis(lastSpilled.plusMonths(1).atDay(1).atStartOfDay()));
+        }
+        YearMonth month = null;
+        Map<EventKey, Event> spilled = Collections.emptyMap();
+        for (int i = 0; i < sorted.length && sorted[i].getStartMillis() <= lastPast; i++) {
+            Event event = sorted[i];
+            if (event.getId() == null) {
+                continue;
+            }
+            EventKey key = EventKey.of(event);
+            Event past = history.get(key);
+            if (past == null && lastSpilled != null) {
+                YearMonth eventMonth = YearMonth.from(event.getStartTime());
+                if (!eventMonth.equals(month)) {
+                    month = eventMonth;
+                    spilled = readSpilledKeys(month);
+                }
+                past = spilled.get(key);
+            }
+            if (past != null) {
+                found[i] = new ImportReport.Conflict(event, ImportReport.Reason.DUPLICATE_ID, past);
+            }
+        }
+        return found;
+    }
+
+    private Map<EventKey, Event> readSpilledKeys(YearMonth month) {
+        if (!month.equals(archive.ceilingMonth(month))) {
+            return Collections.emptyMap();
+        }
+        Map<EventKey, Event> spilled = new HashMap<>();
+        try {
+            archive.forEachInMonth(month, month.atDay(1), month.atEndOfMonth(), event -> spilled.put(EventKey.of(event), event));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return spilled;
+    }
+
+    /**
+     * Sorts the events of a batch into those that can be added and those that conflict. Each
+     * event is first checked on its own against the active events, which the persistent
+     * indexes let several threads do at once, and then against the events of the batch kept
+     * before it in one sequential sweep.
+     *
+     * @param sorted     the batch in start-time order
+     * @param found      the conflicts already known, such as past events, at the positions of
+     *                   their events in the batch; filled in with the rest
+     * @param active     the active events
+     * @param activeIds  the active events by ID
+     * @param parallel   whether to check the events on several threads
+     * @param accepted   receives the events that can be added, in start-time order
+     * @param conflicts  receives the events that cannot, in start-time order
+     */
+    private static void checkBatch(Event[] sorted, ImportReport.Conflict[] found, IntervalTree active, IdMap activeIds,
+                                   boolean parallel, List<Event> accepted, List<ImportReport.Conflict> conflicts) {
+        // A small batch probes the tree around each event; a large one walks it alongside the batch
+        boolean probe = sorted.length < active.size() / 8;
+        IntStream indexes = IntStream.range(0, sorted.length);
+        (parallel ? indexes.parallel() : indexes).forEach(i -> {
+            Event event = sorted[i];
+            if (found[i] != null) {
+                return;
+            }
+            if (event.getId() == null) {
+                found[i] = new ImportReport.Conflict(event, ImportReport.Reason.MISSING_ID, null);
+                return;
+            }
+            Event sameId = activeIds.get(event.getId());
+            if (sameId != null) {
+                found[i] = new ImportReport.Conflict(event, ImportReport.Reason.DUPLICATE_ID, sameId);
+            } else if (probe) {
+                Event overlapping = active.findOverlapping(event.getStartMillis(), event.getEndMillis());
+                if (overlapping != null) {
+                    found[i] = new ImportReport.Conflict(event, ImportReport.Reason.OVERLAPS_EXISTING, overlapping);
+                }
+            }
+        });
+
+        Iterator<Event> walk = probe ? Collections.emptyIterator() : active.values().iterator();
+        Event next = walk.hasNext() ? walk.next() : null;
+        Map<String, Event> kept = new HashMap<>();
+        Event lastKept = null;
+        for (int i = 0; i < sorted.length; i++) {
+            Event event = sorted[i];
+            // Active events are disjoint, so their ends rise with their starts: skip the ones ended before this event
+            while (next != null && next.getEndMillis() < event.getStartMillis()) {
+                next = walk.hasNext() ? walk.next() : null;
+            }
+            if (found[i] == null && next != null && next.getStartMillis() <= event.getEndMillis()) {
+                found[i] = new ImportReport.Conflict(event, ImportReport.Reason.OVERLAPS_EXISTING, next);
+            }
+            if (found[i] != null) {
+                conflicts.add(found[i]);
+                continue;
+            }
+            Event sameId = kept.putIfAbsent(event.getId(), event);
+            if (sameId != null) {
+                conflicts.add(new ImportReport.Conflict(event, ImportReport.Reason.DUPLICATE_ID, sameId));
+            } else if (lastKept != null && event.getStartMillis() <= lastKept.getEndMillis()) {
+                kept.remove(event.getId());
+                conflicts.add(new ImportReport.Conflict(event, ImportReport.Reason.OVERLAPS_BATCH, lastKept));
+            } else {
+                accepted.add(event);
+                lastKept = event;
+            }
+        }
+    }
+
+    /**
+     * Stores a batch of new active events in every index but the interval tree, as
+     * {@link #putEvent(Event)} does for one. Each index is filled by a single task, and for
+     * a large batch the tasks run on several threads at once.
+     *
+     * @param batch    the events to store
+     * @param parallel whether to fill the indexes on several threads
+     */
+    private void indexBatch(List<Event> batch, boolean parallel) {
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            IdMap ids = eventsById;
+            for (Event event : batch) {
+                ids = ids.put(event);
+            }
+            eventsById = ids;
+        });
+        tasks.add(() -> batch.forEach(statistics::add));
+        tasks.add(() -> batch.forEach(event -> eventsByEnd.put(EventKey.ofEnd(event), event)));
+        for (TrigramIndex index : textIndexes.values()) {
+            tasks.add(() -> index.addAll(batch));
+        }
+        tasks.add(() -> eventsByTitle.addAll(batch));
+        tasks.add(() -> eventsByPriority.addAll(batch));
+        (parallel ? tasks.parallelStream() : tasks.stream()).forEach(Runnable::run);
+
+        for (Event event : batch) {
+            firstEndMillis = Math.min(firstEndMillis, event.getEndMillis());
+        }
+    }
+
+    /**
+     * Finds the active events that overlap the half-open range [start, end).
+     *
+     * @param start the start of the range (inclusive)
+     * @param end   the end of the range (exclusive)
+     * @return the overlapping events, ordered by start time
+     */
+    public List<Event> findOverlappingEvents(LocalDateTime start, LocalDateTime end) {
+        return version.findOverlappingEvents(start, end);
+    }
+
+    /**
+     * Retrieves an active event by its ID.
+     *
+     * @param id the ID of the event
+     * @return the event, or null if no active event has that ID
+     */
+    public Event getEventById(String id) {
+        return version.getEventById(id);
+    }
+
+    /**
+     * Removes an active event by its ID.
+     *
+     * @param id the ID of the event to remove
+     * @return true if the event was removed, false if no active event has that ID
+     */
+    public boolean removeEventById(String id) {
+        writeLock();
+        try {
+            Event removed = eventsById.get(id);
+            if (removed == null) {
+                return false;
+            }
+            persist(log -> log.logRemove(id));
+            removeActive(removed);
+            recordEdit(removed, null);
+        } finally {
+            unlockWrite();
+        }
+        publishChanges();
+        return true;
+    }
+
+    /**
+     * Replaces an active event with an updated version carrying the same ID.
+     * The update is rejected, leaving the original event in place, if the new times
+     * conflict with any other active event.
+     *
+     * @param id           the ID of the event to update
+     * @param updatedEvent the new version of the event
+     * @return true if the event was updated, false if it was not found or the new times conflict
+     * @throws IllegalArgumentException if the updated event has a different ID
+     */
+    public boolean updateEventById(String id, Event updatedEvent) {
+        if (!Objects.equals(id, updatedEvent.getId())) {
+            throw new IllegalArgumentException("Updated event must keep the ID of the event it replaces");
+        }
+        writeLock();
+        try {
+            Event existing = eventsById.get(id);
+            if (existing == null) {
+                return false;
+            }
+
+            // The event may overlap its own previous version, but nothing else
+            List<Event> overlapping = new ArrayList<>();
+            intervals.collectOverlapping(updatedEvent.getStartMillis(), updatedEvent.getEndMillis(), true, overlapping);
+            if (overlapping.size() > (overlapping.contains(existing) ? 1 : 0)) {
+                return false; // Conflict found, the original stays in place
+            }
+
+            persist(log -> log.logUpdate(updatedEvent));
+            replaceActive(existing, updatedEvent);
+            recordEdit(existing, updatedEvent);
+        } finally {
+            unlockWrite();
+        }
+        publishChanges();
+        return true;
+    }
+
+    /**
+     * Undoes the most recent edit that has not been undone yet, of the last {@value #UNDO_LIMIT}
+     * made through this calendar: an added event is removed, a removed event is put back and
+     * an updated event gets its previous version back. The undo is logged and reported to the
+     * listeners like any other change, and can itself be redone with {@link #redo()}.
+     * <p>
+     * An edit can only be undone while the calendar still holds what the edit left. If the
+     * event has since been changed, removed or archived in some other way, or putting it back
+     * would now conflict with another event, the edit is dropped instead.
+     * </p>
+     *
+     * @return true if an edit was undone, false if there was none or it had to be dropped
+     */
+    public boolean undo() {
+        return step(undoStack, redoStack, true);
+    }
+
+    /**
+     * Redoes the most recently undone edit. Making a new edit discards the edits left to redo.
+     * As with {@link #undo()}, an edit that no longer applies is dropped instead.
+     *
+     * @return true if an edit was redone, false if there was none or it had to be dropped
+     */
+    public boolean redo() {
+        return step(redoStack, undoStack, false);
+    }
+
+    /**
+     * Checks whether there is an edit that {@link #undo()} could try to undo.
+     *
+     * @return true if there is an edit to undo
+     */
+    public boolean canUndo() {
+        long stamp = readLock();
+        try {
+            return !undoStack.isEmpty();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks whether there is an undone edit that {@link #redo()} could try to redo.
+     *
+     * @return true if there is an edit to redo
+     */
+    public boolean canRedo() {
+        long stamp = readLock();
+        try {
+            return !redoStack.isEmpty();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Takes the next edit off one stack, reverts or reapplies it and, if that worked, moves it to the other stack.
+     */
+    private boolean step(Deque<Edit> from, Deque<Edit> to, boolean undo) {
+        boolean applied;
+        writeLock();
+        try {
+            Edit edit = from.poll();
+            if (edit == null) {
+                return false;
+            }
+            applied = undo ? replace(edit.after, edit.before) : replace(edit.before, edit.after);
+            if (applied) {
+                to.push(edit);
+            }
+        } finally {
+            unlockWrite();
+        }
+        publishChanges();
+        return applied;
+    }
+
+    /**
+     * Replaces one state of an event with another, if the calendar still holds the first and
+     * the second conflicts with nothing else.
+     *
+     * @param current the active event expected, or null if the event is expected to be absent
+     * @param target  the event to leave active instead, or null to remove it
+     * @return true if the event was replaced
+     */
+    private boolean replace(Event current, Event target) {
+        String id = (current != null ? current : target).getId();
+        if (eventsById.get(id) != current) {
+            return false;
+        }
+        if (target != null) {
+            List<Event> overlapping = new ArrayList<>();
+            intervals.collectOverlapping(target.getStartMillis(), target.getEndMillis(), true, overlapping);
+            if (overlapping.size() > (overlapping.contains(current) ? 1 : 0)) {
+                return false;
+            }
+        }
+
+        if (target == null) {
+            persist(log -> log.logRemove(id));
+            removeActive(current);
+        } else if (current == null) {
+            persist(log -> log.logAdd(target));
+            putEvent(target);
+            recordChange(CalendarChange.Type.ADDED, target, null, -1);
+        } else {
+            persist(log -> log.logUpdate(target));
+            replaceActive(current, target);
+        }
+        return true;
+    }
+
+    /**
+     * Remembers an edit so it can be undone, discarding the oldest beyond the limit and any edits left to redo.
+     *
+     * @param before the event before the edit, or null if it was added
+     * @param after  the event after the edit, or null if it was removed
+     */
+    private void recordEdit(Event before, Event after) {
+        undoStack.push(new Edit(before, after));
+        if (undoStack.size() > UNDO_LIMIT) {
+            undoStack.removeLast();
+        }
+        redoStack.clear();
+    }
+
+    /**
+     * One edit to an active event, as the states before and after it.
+     */
+    private static final class Edit {
+        final Event before;
+        final Event after;
+
+        Edit(Event before, Event after) {
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    /**
+     * What one change made under the write lock left, held back until its log record is committed.
+     */
+    private static final class Pending {
+        final long sequence;
+        final CalendarVersion version;
+        final List<CalendarChange> changes;
+        final List<Runnable> reverts;
+
+        /**
+         * @param sequence the log record the change needs committed
+         * @param version  the version the change left, or null if it left the active events as they were
+         * @param changes  the batch of changes for the listeners, or null if there is none
+         * @param reverts  undo the change in memory, in the order it was made
+         */
+        Pending(long sequence, CalendarVersion version, List<CalendarChange> changes, List<Runnable> reverts) {
+            this.sequence = sequence;
+            this.version = version;
+            this.changes = changes;
+            this.reverts = reverts;
+        }
+    }
+
+    /**
+     * Stores an active event in the time-ordered, ID, interval, text, sorted and statistics indexes.
+     *
+     * @param event the event to store
+     */
+    private void putEvent(Event event) {
+        statistics.add(event);
+        eventsById = eventsById.put(event);
+        eventsByEnd.put(EventKey.ofEnd(event), event);
+        firstEndMillis = Math.min(firstEndMillis, event.getEndMillis());
+        intervals = intervals.insert(event.getStartMillis(), event.getEndMillis(), event);
+        for (TrigramIndex index : textIndexes.values()) {
+            index.add(event);
+        }
+        eventsByTitle.add(event);
+        eventsByPriority.add(event);
+        onRollback(() -> takeEvent(event));
+    }
+
+    /**
+     * Removes an active event from the calendar, including the statistics index.
+     *
+     * @param event the event to remove
+     */
+    private void takeEvent(Event event) {
+        unindexActive(event);
+        statistics.remove(event);
+        onRollback(() -> putEvent(event));
+    }
+
+    /**
+     * Moves an active event into the history. The event stays in the statistics index,
+     * which covers both active and past events, so a past event it replaces leaves it.
+     *
+     * @param event the event to archive
+     */
+    private void archiveEvent(Event event) {
+        unindexActive(event);
+        EventKey key = EventKey.of(event);
+        Event replaced = history.put(key, event);
+        if (replaced != null) {
+            statistics.remove(replaced);
+        }
+        onRollback(() -> {
+            if (replaced != null) {
+                history.put(key, replaced);
+                statistics.add(replaced);
+            } else {
+                history.remove(key);
+            }
+            statistics.remove(event);
+            putEvent(event);
+        });
+    }
+
+    /**
+     * Removes an event from the indexes that only cover active events.
+     *
+     * @param event the event to remove
+     */
+    private void unindexActive(Event event) {
+        eventsById = eventsById.remove(event.getId());
+        eventsByEnd.remove(EventKey.ofEnd(event));
+        firstEndMillis = eventsByEnd.isEmpty() ? Long.MAX_VALUE : eventsByEnd.firstKey().getTimeMillis();
+        intervals = intervals.remove(event.getStartMillis(), event.getId());
+        for (TrigramIndex index : textIndexes.values()) {
+            index.remove(event);
+        }
+        eventsByTitle.remove(event);
+        eventsByPriority.remove(event);
+    }
+
+    /**
+     * Removes an active event and records the removal for the listeners.
+     *
+     * @param event the event to remove
+     */
+    private void removeActive(Event event) {
+        int index = listeners.isEmpty() ? -1 : indexOf(event);
+        takeEvent(event);
+        recordChange(CalendarChange.Type.REMOVED, event, null, index);
+    }
+
+    /**
+     * Replaces an active event with a new version and records the update for the listeners.
+     *
+     * @param existing the event to replace
+     * @param updated  the new version
+     */
+    private void replaceActive(Event existing, Event updated) {
+        int previousIndex = listeners.isEmpty() ? -1 : indexOf(existing);
+        takeEvent(existing);
+        putEvent(updated);
+        recordChange(CalendarChange.Type.UPDATED, updated, existing, previousIndex);
+    }
+
+    private int indexOf(Event event) {
+        return intervals.indexOf(event.getStartMillis(), event.getId());
+    }
+
+    /**
+     * Queues a change for the listeners, if there are any. Added and updated events are
+     * located now, after the change has been applied. The change is numbered with the
+     * version that will be published when the write lock is released.
+     *
+     * @param type          the kind of change
+     * @param event         the changed event, or the new version of an updated one
+     * @param previousEvent the replaced version of an updated event, otherwise null
+     * @param index         the position before the change of a removed or archived event,
+     *                      or the previous position of an updated one
+     */
+    private void recordChange(CalendarChange.Type type, Event event, Event previousEvent, int index) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        long number = latest.getNumber() + 1;
+        switch (type) {
+            case ADDED:
+                pendingChanges.add(new CalendarChange(type, event, null, indexOf(event), -1, number));
+                break;
+            case UPDATED:
+                pendingChanges.add(new CalendarChange(type, event, previousEvent, indexOf(event), index, number));
+                break;
+            default:
+                pendingChanges.add(new CalendarChange(type, event, null, index, -1, number));
+        }
+    }
+
+    /**
+     * Takes the read lock, first letting any writer already waiting for the lock go ahead.
+     * The lock itself admits new readers whenever it is not write-locked, so a steady stream
+     * of overlapping reads could otherwise keep a writer waiting indefinitely. In turn, while
+     * a reader waits, no more writers join a group that holds the write lock.
+     *
+     * @return the stamp to release the read lock with
+     */
+    private long readLock() {
+        waitingReaders.incrementAndGet();
+        try {
+            if (writerTurnstile.isLocked()) {
+                writerTurnstile.lock();
+                writerTurnstile.unlock();
+            }
+            return lock.readLock();
+        } finally {
+            waitingReaders.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes the write lock, holding back new readers while waiting for the current ones to finish.
+     * Writers take turns at the turnstile, which the caller holds until {@link #unlockWrite()}.
+     * If a group of writers already holds the write lock while their changes are committed, the
+     * caller joins it instead, unless readers are waiting for the group to end.
+     */
+    private void writeLock() {
+        writerTurnstile.lock();
+        while (groupStamp != 0 && waitingReaders.get() > 0) {
+            groupEnded.awaitUninterruptibly();
+        }
+        if (groupStamp == 0) {
+            groupStamp = lock.writeLock();
+        }
+    }
+
+    /**
+     * Ends a change made under the write lock. The version the change left and the change
+     * itself, queued for the listeners as one batch, are only published once the log records
+     * behind them are committed, and the write lock is kept until then. Waiting for a forced
+     * commit happens after the turnstile is passed on, so the writers that arrive meanwhile
+     * make their changes under the same write lock and are committed by the next force. The
+     * write lock is released once every change made under it is committed.
+     *
+     * @throws UncheckedIOException if the log cannot be forced, in which case every change made
+     *                              in memory but not committed is reverted
+     */
+    private void unlockWrite() {
+        long sequence = appliedSequence;
+        try {
+            queueVersion(sequence);
+            if (sequence <= committedSequence) {
+                publishCommitted();
+                return;
+            }
+        } finally {
+            writerTurnstile.unlock();
+        }
+
+        IOException failure = null;
+        try {
+            store.commit(sequence);
+        } catch (IOException e) {
+            failure = e;
+        }
+        writerTurnstile.lock();
+        try {
+            committedSequence = Math.max(committedSequence, failure == null ? sequence : store.getDurableSequence());
+            if (failure != null) {
+                rollBack();
+            }
+            publishCommitted();
+        } finally {
+            writerTurnstile.unlock();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Builds the version left by the changes just made under the write lock, if they changed
+     * the persistent indexes, and sets it aside with those changes until they are committed.
+     *
+     * @param sequence the log record the changes need committed
+     */
+    private void queueVersion(long sequence) {
+        CalendarVersion next = null;
+        if (!latest.holds(intervals, eventsById)) {
+            next = new CalendarVersion(latest.getNumber() + 1, intervals, eventsById);
+            latest = next;
+        }
+        if (next != null || !pendingChanges.isEmpty() || !reverts.isEmpty()) {
+            List<CalendarChange> changes = pendingChanges.isEmpty()
+                    ? null : Collections.unmodifiableList(new ArrayList<>(pendingChanges));
+            uncommitted.add(new Pending(sequence, next, changes, new ArrayList<>(reverts)));
+            pendingChanges.clear();
+            reverts.clear();
+        }
+    }
+
+    /**
+     * Publishes the versions and queues the changes whose log records are committed, in the
+     * order they were made, and releases the write lock once nothing is left to commit.
+     */
+    private void publishCommitted() {
+        while (!uncommitted.isEmpty() && uncommitted.peekFirst().sequence <= committedSequence) {
+            Pending committed = uncommitted.pollFirst();
+            if (committed.version != null) {
+                recentVersions.set((int) (committed.version.getNumber() % RETAINED_VERSIONS), committed.version);
+                version = committed.version;
+            }
+            if (committed.changes != null) {
+                unpublished.add(committed.changes);
+            }
+        }
+        if (appliedSequence <= committedSequence && groupStamp != 0) {
+            lock.unlockWrite(groupStamp);
+            groupStamp = 0;
+            groupEnded.signalAll();
+        }
+    }
+
+    /**
+     * Reverts every change made in memory whose log record is not committed, newest first,
+     * after a force failed. Nobody but the writers has seen them, as the write lock was held
+     * throughout. Edits left for {@link #undo()} by those changes no longer apply and are
+     * dropped when tried.
+     */
+    private void rollBack() {
+        while (!uncommitted.isEmpty() && uncommitted.peekLast().sequence > committedSequence) {
+            List<Runnable> undone = uncommitted.pollLast().reverts;
+            for (int i = undone.size() - 1; i >= 0; i--) {
+                undone.get(i).run();
+            }
+        }
+        reverts.clear(); // Recorded again by the reverts themselves
+
+        latest = version;
+        for (Pending kept : uncommitted) {
+            if (kept.version != null) {
+                latest = kept.version;
+            }
+        }
+        intervals = latest.getIntervals();
+        eventsById = latest.getEventsById();
+        appliedSequence = committedSequence;
+    }
+
+    /**
+     * Remembers how to revert a change just made in memory, if its log record still has to be
+     * committed before anyone may see it.
+     *
+     * @param revert undoes the change in memory
+     */
+    private void onRollback(Runnable revert) {
+        if (appliedSequence > committedSequence) {
+            reverts.add(revert);
+        }
+    }
+
+    /**
+     * Makes the current state of the persistent indexes the current version, if it changed.
+     * Called before the calendar is shared.
+     */
+    private void publishVersion() {
+        if (!version.holds(intervals, eventsById)) {
+            version = new CalendarVersion(version.getNumber() + 1, intervals, eventsById);
+            recentVersions.set((int) (version.getNumber() % RETAINED_VERSIONS), version);
+            latest = version;
+        }
+    }
+
+    /**
+     * Returns the current version of the active events. The version never changes, so every
+     * read of it is consistent with every other, however long the caller keeps it.
+     *
+     * @return the current version
+     */
+    public CalendarVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns an earlier or the current version of the active events, as numbered by
+     * {@link CalendarChange#getVersion()}. Only the {@value #RETAINED_VERSIONS} most recent
+     * versions are kept; older ones are left to the garbage collector unless someone still
+     * holds them.
+     *
+     * @param number the version number
+     * @return the version, or null if it is no longer retained or does not exist yet
+     */
+    public CalendarVersion getVersion(long number) {
+        if (number < 0) {
+            return null;
+        }
+        CalendarVersion retained = recentVersions.get((int) (number % RETAINED_VERSIONS));
+        return retained != null && retained.getNumber() == number ? retained : null;
+    }
 
     /**
-     * Constructs a new CalendarManager with empty events and history maps.
+     * Delivers the queued batches of changes to every listener. This runs after the write lock
+     * is released, so listeners may read the calendar, but one delivery at a time and in the
+     * order the batches were queued, so listeners never see changes out of order.
      */
-    public Calendar() {
-        events = new HashMap<>();
-        history = new HashMap<>();
+    private void publishChanges() {
+        if (unpublished.isEmpty()) {
+            return;
+        }
+        synchronized (unpublished) {
+            List<CalendarChange> batch;
+            while ((batch = unpublished.poll()) != null) {
+                for (CalendarListener listener : listeners) {
+                    listener.calendarChanged(batch);
+                }
+            }
+        }
     }
 
     /**
-     * Adds a new event to the calendar if there is no conflict with existing events.
+     * Registers a listener to be told about every later change to the active events.
      *
-     * @param newEvent the event to add
-     * @return true if the event was added successfully, false if there is a conflict
+     * @param listener the listener to add
      */
-    public boolean addEvent(Event newEvent) {
-        // Check for conflicts with existing events
-        for (Event existingEvent : events.values()) {
-            if (eventsOverlap(existingEvent, newEvent)) {
-                return false; // Conflict found
+    public void addCalendarListener(CalendarListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeCalendarListener(CalendarListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Writes a change to the backing store, if any, before it is applied in memory. If the
+     * store forces every commit, the commit is left to {@link #unlockWrite()}, which keeps
+     * the change from readers, listeners and the published versions until it is durable and
+     * reverts it if it cannot be made so. Otherwise it is committed straight away, which
+     * cannot block. If the write fails the change is not applied. Once enough changes have
+     * accumulated a snapshot is taken first, while the in-memory state still matches
+     * everything logged so far.
+     *
+     * @param write the log write to perform
+     * @throws UncheckedIOException if the store cannot be written
+     */
+    private void persist(StoreWrite write) {
+        if (store == null) {
+            return;
+        }
+        try {
+            if (store.isSnapshotDue()) {
+                snapshot();
+            }
+            long sequence = write.to(store);
+            if (store.forcesCommits()) {
+                appliedSequence = sequence;
+            } else {
+                store.commit(sequence);
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        // No conflicts, add the event
-        events.put(newEvent.getStartTime().toString(), newEvent);
-        return true;
+    /**
+     * Rotates the store's log and hands it a copy of the current state to snapshot.
+     *
+     * @throws IOException if the log cannot be rotated
+     */
+    private void snapshot() throws IOException {
+        store.snapshot(new ArrayList<>(intervals.values()), new ArrayList<>(history.values()));
+    }
+
+    /**
+     * Moves the oldest past events into the on-disk archive once the in-memory history has
+     * outgrown its limit, then snapshots the calendar so it no longer holds them. Nothing is
+     * spilled while a change made in memory is still to be committed: a failed commit reverts
+     * such a change, which could make a spilled event active again, but not the spill itself.
+     *
+     * @throws UncheckedIOException if the archive or store cannot be written
+     */
+    private void spillHistory() {
+        if (archive == null || appliedSequence > committedSequence || !archive.shouldSpill(history.size())) {
+            return;
+        }
+        List<Event> spilled = new ArrayList<>();
+        Iterator<Event> oldest = history.values().iterator();
+        for (int count = archive.spillCount(history.size()); count > 0; count--) {
+            spilled.add(oldest.next());
+        }
+
+        try {
+            archive.spill(spilled, store.nextSnapshotGeneration(), store.getDurableGeneration());
+            for (Event event : spilled) {
+                history.remove(EventKey.of(event));
+            }
+            snapshot();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A single write to the backing store.
+     */
+    private interface StoreWrite {
+        long to(CalendarStore store) throws IOException;
+    }
+
+    /**
+     * Applies recovered changes directly to the indexes, without logging them again.
+     */
+    private class Recovery implements CalendarStore.Replay {
+        @Override
+        public void add(Event event) {
+            if (eventsById.get(event.getId()) == null) {
+                putEvent(event);
+            }
+        }
+
+        @Override
+        public void remove(String id) {
+            Event event = eventsById.get(id);
+            if (event != null) {
+                takeEvent(event);
+            }
+        }
+
+        @Override
+        public void update(Event event) {
+            remove(event.getId());
+            putEvent(event);
+        }
+
+        @Override
+        public void archive(String id) {
+            Event event = eventsById.get(id);
+            if (event != null) {
+                archiveEvent(event);
+            }
+        }
+
+        @Override
+        public void restoreHistory(Event event) {
+            Event replaced = history.put(EventKey.of(event), event);
+            if (replaced != null) {
+                statistics.remove(replaced);
+            }
+            statistics.add(event);
+        }
+    }
+
+    /**
+     * Looks up an active event in a version by a key in the form produced by
+     * {@link LocalDateTime#toString()}. This takes no lock: with the write lock held, pass the
+     * latest version, which matches the indexes until something is changed.
+     *
+     * @param key  the start time of the event as an ISO-8601 string
+     * @param from the version to look in
+     * @return the event starting at that time, or null if there is none or the key is malformed
+     */
+    private static Event findByKey(String key, CalendarVersion from) {
+        try {
+            long start = epochMillis(LocalDateTime.parse(key));
+            Event event = from.ceiling(start);
+            return event != null && event.getStartMillis() == start ? event : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converts a date-time to a timezone-neutral millisecond ordinal used by the indexes.
+     *
+     * @param dateTime the date-time to convert
+     * @return the date-time as milliseconds since 1970-01-01T00:00
+     */
+    static long epochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
     }
 
     /**
-     * Checks if two events overlap in time.
+     * Converts a millisecond ordinal produced by {@link #epochMillis(LocalDateTime)} back to a date-time.
      *
-     * @param first the first event
-     * @param second the second event
-     * @return true if the events overlap, false otherwise
+     * @param millis milliseconds since 1970-01-01T00:00
+     * @return the corresponding date-time
      */
-    private boolean eventsOverlap(Event first, Event second) {
-        return !(first.getEndTime().isBefore(second.getStartTime()) ||
-                first.getStartTime().isAfter(second.getEndTime()));
+    static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
     }
 
     /**
      * Removes an event from the calendar based on the specified key.
      *
-     * @param key the key of the event to remove
+     * @param key the start time of the event to remove, as produced by {@link LocalDateTime#toString()}
      */
     public void removeEvent(String key) {
-        if (events.remove(key) != null) {
+        Event removed;
+        writeLock();
+        try {
+            removed = findByKey(key, latest);
+            if (removed != null) {
+                persist(log -> log.logRemove(removed.getId()));
+                removeActive(removed);
+                recordEdit(removed, null);
+            }
+        } finally {
+            unlockWrite();
+        }
+        if (removed != null) {
+            publishChanges();
             System.out.println("Event removed successfully.");
         } else {
             System.out.println("No event found for the given date and time.");
@@ -67,11 +1271,11 @@ public class Calendar {
     /**
      * Updates an event in the calendar based on user input.
      *
-     * @param key     the key of the event to update
+     * @param key     the start time of the event to update, as produced by {@link LocalDateTime#toString()}
      * @param scanner the scanner to read user input
      */
     public void updateEvent(String key, Scanner scanner) {
-        Event event = events.get(key);
+        Event event = findByKey(key, version);
         if (event == null) {
             System.out.println("No event found for the given date and time.");
             return;
@@ -109,7 +1313,7 @@ public class Calendar {
         String newStartTimeStr = scanner.nextLine().trim();
         if (!newStartTimeStr.isEmpty()) {
             try {
-                newStartTime = LocalDateTime.parse(newStartTimeStr, DateTimeFormatter.ofPattern("MM/dd/yyyy h:mm a"));
+                newStartTime = LocalDateTime.parse(newStartTimeStr, EventFormat.DISPLAY);
             } catch (DateTimeParseException e) {
                 System.out.println("Invalid start time format. Keeping the current start time.");
             }
@@ -119,7 +1323,7 @@ public class Calendar {
         String newEndTimeStr = scanner.nextLine().trim();
         if (!newEndTimeStr.isEmpty()) {
             try {
-                newEndTime = LocalDateTime.parse(newEndTimeStr, DateTimeFormatter.ofPattern("MM/dd/yyyy h:mm a"));
+                newEndTime = LocalDateTime.parse(newEndTimeStr, EventFormat.DISPLAY);
                 if (newEndTime.isBefore(newStartTime)) {
                     System.out.println("End time must be after start time. Keeping the current end time.");
                     newEndTime = event.getEndTime();
@@ -130,8 +1334,20 @@ public class Calendar {
         }
 
         Event updatedEvent = new Event(newTitle, newStartTime, newEndTime, newLocation, event.getId(), newDescription, newPriority);
-        events.remove(key);
-        events.put(newStartTime.toString(), updatedEvent);
+        // The calendar is not locked while waiting for input, so the event may have changed meanwhile
+        writeLock();
+        try {
+            if (eventsById.get(event.getId()) != event) {
+                System.out.println("The event was changed or removed meanwhile. Update discarded.");
+                return;
+            }
+            persist(log -> log.logUpdate(updatedEvent));
+            replaceActive(event, updatedEvent);
+            recordEdit(event, updatedEvent);
+        } finally {
+            unlockWrite();
+        }
+        publishChanges();
         System.out.println("Event updated successfully.");
     }
 
@@ -139,13 +1355,83 @@ public class Calendar {
      * Displays all events sorted by their start time.
      */
     public void displayAllEvents() {
-        List<Event> sortedEvents = new ArrayList<>(events.values());
-        sortedEvents.sort(Comparator.comparing(Event::getStartTime));
-        for (Event event : sortedEvents) {
+        for (Event event : version.getEvents()) {
             System.out.println(event);
         }
     }
 
+    /**
+     * Returns the active events in start-time order, as of the current version. The collection
+     * is read-only and does not change when the calendar does, so it may be iterated from any thread.
+     *
+     * @return the active events ordered by start time
+     */
+    public Collection<Event> getEvents() {
+        return version.getEvents();
+    }
+
+    /**
+     * Returns the number of active events.
+     *
+     * @return the number of active events
+     */
+    public int getEventCount() {
+        return version.getEventCount();
+    }
+
+    /**
+     * Returns the active event at the given position in start-time order, the same order
+     * as {@link #getEvents()}, in O(log n) time.
+     *
+     * @param index the position, from 0 to {@code getEventCount() - 1}
+     * @return the event at that position
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public Event getEventAt(int index) {
+        return version.getEventAt(index);
+    }
+
+    /**
+     * Returns the position of an active event in start-time order, in O(log n) time.
+     *
+     * @param id the ID of the event
+     * @return the position of the event, or -1 if no active event has that ID
+     */
+    public int indexOfEvent(String id) {
+        return version.indexOfEvent(id);
+    }
+
+    /**
+     * Returns the active events starting within the half-open range [from, to).
+     *
+     * @param from the earliest start time (inclusive)
+     * @param to   the latest start time (exclusive)
+     * @return the matching events, ordered by start time
+     */
+    public List<Event> getEventsStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return version.getEventsStartingBetween(from, to);
+    }
+
+    /**
+     * Finds the first active event starting strictly after the given time.
+     *
+     * @param dateTime the reference time
+     * @return the next event, or null if there is none
+     */
+    public Event findNextEvent(LocalDateTime dateTime) {
+        return version.ceiling(epochMillis(dateTime) + 1);
+    }
+
+    /**
+     * Finds the last active event starting strictly before the given time.
+     *
+     * @param dateTime the reference time
+     * @return the previous event, or null if there is none
+     */
+    public Event findPreviousEvent(LocalDateTime dateTime) {
+        return version.lower(epochMillis(dateTime));
+    }
+
     /**
      * Filters events based on a specified attribute and filter value.
      *
@@ -154,104 +1440,132 @@ public class Calendar {
      * @return a list of events that match the filter criteria
      */
     public List<Event> viewEvents(String attribute, String filterValue) {
+        long stamp = readLock();
+        try {
+            return filterEvents(attribute, filterValue);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Filters events as {@link #viewEvents(String, String)} does, with the read lock already held.
+     */
+    private List<Event> filterEvents(String attribute, String filterValue) {
+        if (attribute.equalsIgnoreCase("date")) {
+            return viewEventsOn(filterValue);
+        }
+
+        TrigramIndex index = textIndexes.get(attribute.toLowerCase());
+        if (index == null) {
+            System.out.println("Invalid attribute.");
+            return Collections.emptyList();
+        }
+
+        // Text filters of at least a trigram are answered from the index; shorter ones fall back to a scan
+        List<Event> matches = index.search(filterValue);
+        if (matches != null) {
+            matches.sort(TIME_ORDER);
+            return matches;
+        }
+
+        String folded = filterValue.toLowerCase();
         List<Event> filteredEvents = new ArrayList<>();
-        for (Event event : events.values()) {
-            switch (attribute.toLowerCase()) {
-                case "title":
-                    if (event.getTitle().toLowerCase().contains(filterValue.toLowerCase())) {
-                        filteredEvents.add(event);
-                    }
-                    break;
-                case "location":
-                    if (event.getLocation().toLowerCase().contains(filterValue.toLowerCase())) {
-                        filteredEvents.add(event);
-                    }
-                    break;
-                case "priority":
-                    if (event.getPriority().toLowerCase().contains(filterValue.toLowerCase())) {
-                        filteredEvents.add(event);
-                    }
-                    break;
-                case "description":
-                    if (event.getDescription().toLowerCase().contains(filterValue.toLowerCase())) {
-                        filteredEvents.add(event);
-                    }
-                    break;
-                case "date":
-                    try {
-                        LocalDate filterDate = LocalDate.parse(filterValue, DateTimeFormatter.ofPattern("MM/dd/yyyy"));
-                        if (event.getStartTime().toLocalDate().isEqual(filterDate)) {
-                            filteredEvents.add(event);
-                        }
-                    } catch (DateTimeParseException e) {
-                        System.out.println("Invalid date format. Please use MM/DD/YYYY.");
-                    }
-                    break;
-                default:
-                    System.out.println("Invalid attribute.");
-                    return Collections.emptyList();
+        for (Event event : intervals.values()) {
+            if (index.contains(event, folded)) { // Compares with the index's lowercase copy of the field
+                filteredEvents.add(event);
             }
         }
-        filteredEvents.sort(Comparator.comparing(Event::getStartTime));
-        return filteredEvents;
+        return filteredEvents; // Already in start-time order
     }
 
     /**
-     * Sorts events based on a specified attribute using the quicksort algorithm.
+     * Narrows the result of an earlier text filter to a longer filter value, as typed by a user
+     * extending a search. Only the earlier matches are examined, since anything containing the
+     * new value also contains any part of it; events no longer active are dropped.
+     * <p>
+     * The caller must make sure the earlier value is contained in the new one and that no
+     * event has been added or updated since, or the result may miss events.
+     * </p>
      *
-     * @param attribute the attribute to sort by (date, title, priority)
-     * @return a list of sorted events
+     * @param previous    the earlier result of {@link #viewEvents(String, String)} or of this method
+     * @param attribute   the attribute to filter by (title, location, priority, description, date)
+     * @param filterValue the new value to filter by
+     * @return the matching events in start-time order
      */
-    public List<Event> sortEvents(String attribute) {
-        List<Event> sortedEvents = new ArrayList<>(events.values());
-        if (attribute.equalsIgnoreCase("date")) {
-            quicksort(sortedEvents, Comparator.comparing(Event::getStartTime), 0, sortedEvents.size() - 1);
-        } else if (attribute.equalsIgnoreCase("title")) {
-            quicksort(sortedEvents, Comparator.comparing(Event::getTitle), 0, sortedEvents.size() - 1);
-        } else if (attribute.equalsIgnoreCase("priority")) {
-            quicksort(sortedEvents, Comparator.comparing(Event::getPriority), 0, sortedEvents.size() - 1);
+    public List<Event> refineEvents(List<Event> previous, String attribute, String filterValue) {
+        long stamp = readLock();
+        try {
+            TrigramIndex index = textIndexes.get(attribute.toLowerCase());
+            if (index == null) {
+                return filterEvents(attribute, filterValue); // Dates do not refine
+            }
+            String folded = filterValue.toLowerCase();
+            List<Event> refined = new ArrayList<>();
+            for (Event event : previous) {
+                if (eventsById.get(event.getId()) == event && index.contains(event, folded)) {
+                    refined.add(event);
+                }
+            }
+            return refined;
+        } finally {
+            lock.unlockRead(stamp);
         }
-        return sortedEvents;
     }
 
     /**
-     * Performs the quicksort algorithm on a list.
+     * Finds the active events starting on the given day with a range query on the current
+     * version's interval tree, which takes O(log n + k) time for k matches.
      *
-     * @param list       the list to sort
-     * @param comparator the comparator to determine the order of the list
-     * @param low        the starting index
-     * @param high       the ending index
-     * @param <T>        the type of elements in the list
+     * @param filterValue the day in MM/dd/yyyy format
+     * @return the active events starting that day, or an empty list if the date is invalid
      */
-    private <T> void quicksort(List<T> list, Comparator<? super T> comparator, int low, int high) {
-        if (low < high) {
-            int pi = partition(list, comparator, low, high);
-            quicksort(list, comparator, low, pi - 1);
-            quicksort(list, comparator, pi + 1, high);
+    private List<Event> viewEventsOn(String filterValue) {
+        LocalDate filterDate;
+        try {
+            filterDate = LocalDate.parse(filterValue, EventFormat.DATE);
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format. Please use MM/DD/YYYY.");
+            return Collections.emptyList();
         }
+
+        return version.getEventsStartingBetween(filterDate.atStartOfDay(), filterDate.plusDays(1).atStartOfDay());
     }
 
     /**
-     * Partitions the list for the quicksort algorithm.
+     * Returns events ordered by a specified attribute. Each order is kept up to date as
+     * events are added and removed, so no sorting happens here; ties are broken by start
+     * time and then by event ID.
      *
-     * @param list       the list to partition
-     * @param comparator the comparator to determine the order
-     * @param low        the starting index
-     * @param high       the ending index
-     * @param <T>        the type of elements in the list
-     * @return the partition index
+     * @param attribute the attribute to sort by (date, title, priority)
+     * @return a list of sorted events
      */
-    private <T> int partition(List<T> list, Comparator<? super T> comparator, int low, int high) {
-        T pivot = list.get(high);
-        int i = (low - 1);
-        for (int j = low; j < high; j++) {
-            if (comparator.compare(list.get(j), pivot) <= 0) {
-                i++;
-                Collections.swap(list, i, j);
-            }
+    public List<Event> sortEvents(String attribute) {
+        if (!attribute.equalsIgnoreCase("title") && !attribute.equalsIgnoreCase("priority")) {
+            return version.sortEvents(); // The primary index is already ordered by start time
+        }
+        long stamp = readLock();
+        try {
+            return new ArrayList<>(attribute.equalsIgnoreCase("title") ? eventsByTitle : eventsByPriority);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the order used by {@link #sortEvents(String)} for an attribute, so a sorted copy
+     * can be kept up to date from {@link CalendarChange}s.
+     *
+     * @param attribute the attribute to sort by (date, title, priority)
+     * @return the comparator for that order
+     */
+    public static Comparator<Event> sortOrder(String attribute) {
+        if (attribute.equalsIgnoreCase("title")) {
+            return TITLE_ORDER;
+        } else if (attribute.equalsIgnoreCase("priority")) {
+            return PRIORITY_ORDER;
         }
-        Collections.swap(list, i + 1, high);
-        return i + 1;
+        return TIME_ORDER;
     }
 
     /**
@@ -261,39 +1575,164 @@ public class Calendar {
      * @return the event if found, null otherwise
      */
     public Event searchEventByDatetime(LocalDateTime dateTime) {
-        return events.get(dateTime.toString());
+        long start = epochMillis(dateTime);
+        Event event = version.ceiling(start);
+        return event != null && event.getStartMillis() == start ? event : null;
     }
 
     /**
      * Moves past events from the active list to the history list.
+     * Active events are also indexed by end time, so only the events that have
+     * actually ended are visited. Once the move is committed, the oldest past events are
+     * spilled to disk if the history has outgrown its memory limit.
      */
     public void refreshEvents() {
-        LocalDateTime now = LocalDateTime.now();
-        List<String> keysToMove = new ArrayList<>();
-
-        for (Map.Entry<String, Event> entry : events.entrySet()) {
-            if (entry.getValue().getEndTime().isBefore(now)) {
-                keysToMove.add(entry.getKey());
+        long now = epochMillis(LocalDateTime.now());
+        long stamp = lock.tryOptimisticRead();
+        long firstEnd = firstEndMillis;
+        if (lock.validate(stamp) && firstEnd >= now) {
+            return; // Nothing has ended, which is the usual case
+        }
+        writeLock();
+        try {
+            List<Event> ended = new ArrayList<>(eventsByEnd.headMap(EventKey.lowest(now)).values());
+            if (!ended.isEmpty()) {
+                persist(log -> log.logArchiveAll(ended)); // One commit for the whole refresh
+                for (Event expired : ended) {
+                    int index = listeners.isEmpty() ? -1 : indexOf(expired);
+                    archiveEvent(expired);
+                    recordChange(CalendarChange.Type.ARCHIVED, expired, null, index);
+                }
             }
+        } finally {
+            unlockWrite();
         }
+        publishChanges();
 
-        for (String key : keysToMove) {
-            Event event = events.remove(key);
-            history.put(key, event);
+        // Only now are the events just archived committed, and so safe to spill
+        writeLock();
+        try {
+            spillHistory();
+        } finally {
+            unlockWrite();
         }
     }
 
     /**
-     * Retrieves a list of all past events.
+     * Retrieves a list of all past events, including those spilled to disk.
+     * Prefer {@link #forEachHistoryEvent(Consumer)} for large histories, which does not
+     * hold them all in memory at once.
      *
-     * @return a list of past events
+     * @return a list of past events in start-time order
      */
     public List<Event> getHistoryEvents() {
-        return new ArrayList<>(history.values());
+        List<Event> past = new ArrayList<>();
+        forEachHistoryEvent(past::add);
+        return past;
+    }
+
+    /**
+     * Streams all past events in start-time order. Spilled events are read back from disk
+     * one month at a time, so memory use is bounded by the busiest month.
+     *
+     * @param action receives each past event
+     * @throws UncheckedIOException if an archived segment cannot be read
+     */
+    public void forEachHistoryEvent(Consumer<? super Event> action) {
+        if (archive == null) {
+            List<Event> past;
+            long stamp = readLock();
+            try {
+                past = new ArrayList<>(history.values());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            past.forEach(action);
+            return;
+        }
+        YearMonth month = null;
+        while (true) {
+            List<Event> batch;
+            long stamp = readLock();
+            try {
+                month = month == null ? firstHistoryMonth() : nextHistoryMonth(month);
+                if (month == null) {
+                    return;
+                }
+                batch = new ArrayList<>(history.subMap(monthStart(month), monthStart(month.plusMonths(1))).values());
+                readArchivedMonth(month, null, null, batch);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            batch.forEach(action);
+            month = month.plusMonths(1);
+        }
+    }
+
+    /**
+     * Finds the first month on or after the given one holding past events in memory or on disk.
+     *
+     * @param from the month to start from
+     * @return the next month with past events, or null if there is none
+     */
+    private YearMonth nextHistoryMonth(YearMonth from) {
+        Map.Entry<EventKey, Event> inMemory = history.ceilingEntry(monthStart(from));
+        YearMonth memoryMonth = inMemory == null ? null : YearMonth.from(inMemory.getValue().getStartTime());
+        return earlier(memoryMonth, archive == null ? null : archive.ceilingMonth(from));
+    }
+
+    /**
+     * Finds the first month holding past events in memory or on disk.
+     *
+     * @return the first month with past events, or null if there is none
+     */
+    private YearMonth firstHistoryMonth() {
+        YearMonth memoryMonth = history.isEmpty() ? null : YearMonth.from(history.firstEntry().getValue().getStartTime());
+        return earlier(memoryMonth, archive == null ? null : archive.firstMonth());
+    }
+
+    private static YearMonth earlier(YearMonth first, YearMonth second) {
+        if (first == null || second == null) {
+            return first == null ? second : first;
+        }
+        return first.isBefore(second) ? first : second;
+    }
+
+    private static EventKey monthStart(YearMonth month) {
+        return EventKey.lowest(epochMillis(month.atDay(1).atStartOfDay()));
+    }
+
+    /**
+     * Appends the archived events of a month starting within [from, to] to a batch that
+     * already holds that month's in-memory events, and restores start-time order.
+     *
+     * @param month the month to read
+     * @param from  the first start day to include, or null for the whole month
+     * @param to    the last start day to include, or null for the whole month
+     * @param batch the batch to extend
+     * @throws UncheckedIOException if an archived segment cannot be read
+     */
+    private void readArchivedMonth(YearMonth month, LocalDate from, LocalDate to, List<Event> batch) {
+        if (archive == null) {
+            return;
+        }
+        int inMemory = batch.size();
+        try {
+            archive.forEachInMonth(month, from == null ? month.atDay(1) : from, to == null ? month.atEndOfMonth() : to, batch::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (batch.size() > inMemory) {
+            batch.sort(TIME_ORDER);
+        }
     }
 
     /**
      * Generates a summary of events within a specified date range.
+     * <p>
+     * The whole summary is built in memory; for ranges that may hold many events use
+     * {@link #writeSummary(LocalDate, LocalDate, Appendable)} or {@link #eventsInRange(LocalDate, LocalDate)}.
+     * </p>
      *
      * @param startDate the start date of the range
      * @param endDate   the end date of the range
@@ -301,16 +1740,210 @@ public class Calendar {
      */
     public String generateSummary(LocalDate startDate, LocalDate endDate) {
         StringBuilder summary = new StringBuilder();
-        for (Event event : events.values()) {
-            if (!event.getStartTime().toLocalDate().isBefore(startDate) && !event.getEndTime().toLocalDate().isAfter(endDate)) {
-                summary.append(event.toString()).append("\n\n");
+        forEachEventInRange(startDate, endDate, event -> event.formatTo(summary).append("\n\n"));
+        return summary.toString();
+    }
+
+    /**
+     * Writes the same text as {@link #generateSummary(LocalDate, LocalDate)} to a destination
+     * as the events are read, so memory use is bounded by the busiest month in the range.
+     *
+     * @param startDate the start date of the range
+     * @param endDate   the end date of the range
+     * @param out       the destination, such as a {@link java.io.Writer}
+     * @throws IOException if the destination cannot be written or an archived segment cannot be read
+     */
+    public void writeSummary(LocalDate startDate, LocalDate endDate, Appendable out) throws IOException {
+        try {
+            Iterator<Event> events = eventsInRange(startDate, endDate);
+            while (events.hasNext()) {
+                events.next().formatTo(out);
+                out.append("\n\n");
             }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Computes aggregate statistics over the active and past events, including archived ones,
+     * that start on a day in the closed range [startDate, endDate]. The figures are kept up to
+     * date as events change, so this takes time logarithmic in the span of the range rather
+     * than proportional to the number of events in it.
+     *
+     * @param startDate the start date of the range
+     * @param endDate   the end date of the range
+     * @return the statistics for the range
+     */
+    public EventStatistics getStatistics(LocalDate startDate, LocalDate endDate) {
+        long stamp = readLock();
+        try {
+            return new EventStatistics(startDate, endDate, statistics.sum(startDate.toEpochDay(), endDate.toEpochDay()));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the active and past events starting in the closed range [startDate, endDate],
+     * grouped by day, by ISO week (starting Monday) or by month.
+     *
+     * @param startDate the start date of the range
+     * @param endDate   the end date of the range
+     * @param period    {@link ChronoUnit#DAYS}, {@link ChronoUnit#WEEKS} or {@link ChronoUnit#MONTHS}
+     * @return the count for every period overlapping the range, including empty ones, keyed by the
+     *         first day of the period that lies in the range
+     * @throws IllegalArgumentException if the period is not one of the supported units
+     */
+    public NavigableMap<LocalDate, Long> countEvents(LocalDate startDate, LocalDate endDate, ChronoUnit period) {
+        if (period != ChronoUnit.DAYS && period != ChronoUnit.WEEKS && period != ChronoUnit.MONTHS) {
+            throw new IllegalArgumentException("Unsupported period: " + period);
         }
-        for (Event event : history.values()) {
-            if (!event.getStartTime().toLocalDate().isBefore(startDate) && !event.getEndTime().toLocalDate().isAfter(endDate)) {
-                summary.append(event.toString()).append("\n\n");
+        NavigableMap<LocalDate, Long> counts = new TreeMap<>();
+        LocalDate from = startDate;
+        long stamp = readLock();
+        try {
+            while (!from.isAfter(endDate)) {
+                LocalDate next;
+                if (period == ChronoUnit.DAYS) {
+                    next = from.plusDays(1);
+                } else if (period == ChronoUnit.WEEKS) {
+                    next = from.with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+                } else {
+                    next = from.with(TemporalAdjusters.firstDayOfNextMonth());
+                }
+                LocalDate to = next.isAfter(endDate) ? endDate : next.minusDays(1);
+                counts.put(from, statistics.count(from.toEpochDay(), to.toEpochDay()));
+                from = next;
             }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns a lazy iterator over the active and past events that start on or after the start
+     * date and end on or before the end date, in start-time order. Events are loaded one month
+     * at a time as the iterator advances, so a caller can read a large range page by page.
+     * <p>
+     * The active events are those of the version current when the iterator is created, so a
+     * long summary sees one consistent set of them however the calendar changes meanwhile.
+     * Past events are copied one month at a time as the iterator reaches it, and changes to the
+     * history never cause a {@link ConcurrentModificationException}.
+     * </p>
+     *
+     * @param startDate the start date of the range
+     * @param endDate   the end date of the range
+     * @return an iterator over the events in the range; its {@code hasNext} and {@code next}
+     *         throw {@link UncheckedIOException} if an archived segment cannot be read
+     */
+    public Iterator<Event> eventsInRange(LocalDate startDate, LocalDate endDate) {
+        return new RangeIterator(startDate, endDate);
+    }
+
+    private void forEachEventInRange(LocalDate startDate, LocalDate endDate, Consumer<? super Event> action) {
+        eventsInRange(startDate, endDate).forEachRemaining(action);
+    }
+
+    /**
+     * Walks a date range month by month, merging the active events of one version with the
+     * past events in memory and on disk, and holding one month of events at a time.
+     */
+    private class RangeIterator implements Iterator<Event> {
+        private final CalendarVersion snapshot = version;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final YearMonth last;
+        private YearMonth month;
+        private Iterator<Event> batch = Collections.emptyIterator();
+        private Event next;
+
+        RangeIterator(LocalDate startDate, LocalDate endDate) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.last = YearMonth.from(endDate);
+            this.month = YearMonth.from(startDate);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (batch.hasNext()) {
+                    Event event = batch.next();
+                    if (!event.getEndTime().toLocalDate().isAfter(endDate)) {
+                        next = event;
+                    }
+                } else if (month != null && !month.isAfter(last)) {
+                    batch = loadNextMonth().iterator();
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Event next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Event event = next;
+            next = null;
+            return event;
+        }
+
+        /**
+         * Loads the next month in the range holding events, holding the read lock only while doing so.
+         */
+        private List<Event> loadNextMonth() {
+            long stamp = readLock();
+            try {
+                month = earlier(nextActiveMonth(month), nextHistoryMonth(month));
+                if (month == null || month.isAfter(last)) {
+                    return Collections.emptyList();
+                }
+                List<Event> loaded = loadMonth(month);
+                month = month.plusMonths(1);
+                return loaded;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private List<Event> loadMonth(YearMonth month) {
+            LocalDate from = startDate.isAfter(month.atDay(1)) ? startDate : month.atDay(1);
+            LocalDate to = endDate.isBefore(month.atEndOfMonth()) ? endDate : month.atEndOfMonth();
+
+            LocalDateTime after = to.plusDays(1).atStartOfDay();
+            List<Event> loaded = snapshot.getEventsStartingBetween(from.atStartOfDay(), after);
+            List<Event> past = new ArrayList<>(history.subMap(EventKey.lowest(epochMillis(from.atStartOfDay())),
+                    EventKey.lowest(epochMillis(after))).values());
+            readArchivedMonth(month, from, to, past);
+            int active = loaded.size();
+            for (Event event : past) {
+                if (!isActive(event)) {
+                    loaded.add(event);
+                }
+            }
+            if (active > 0 && loaded.size() > active) {
+                loaded.sort(TIME_ORDER);
+            }
+            return loaded;
+        }
+
+        private YearMonth nextActiveMonth(YearMonth from) {
+            Event event = snapshot.ceiling(epochMillis(from.atDay(1).atStartOfDay()));
+            return event == null ? null : YearMonth.from(event.getStartTime());
+        }
+
+        /**
+         * Checks whether a past event was still active in the snapshot, having been archived
+         * since, so it is not returned twice.
+         */
+        private boolean isActive(Event past) {
+            Event active = snapshot.getEventById(past.getId());
+            return active != null && active.getStartMillis() == past.getStartMillis();
         }
-        return summary.toString();
     }
 }
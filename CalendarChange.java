@@ -0,0 +1,106 @@
+/**
+ * A single change to the active events of a {@link Calendar}, with the positions it affects
+ * in start-time order (the order of {@link Calendar#getEventAt(int)}).
+ */
+public final class CalendarChange {
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+        /** An event was added. */
+        ADDED,
+        /** An event was removed. */
+        REMOVED,
+        /** An event was replaced by a new version with the same ID. */
+        UPDATED,
+        /** An event ended and moved from the active events to the history. */
+        ARCHIVED
+    }
+
+    private final Type type;
+    private final Event event;
+    private final Event previousEvent;
+    private final int index;
+    private final int previousIndex;
+    private final long version;
+
+    CalendarChange(Type type, Event event, Event previousEvent, int index, int previousIndex, long version) {
+        this.type = type;
+        this.event = event;
+        this.previousEvent = previousEvent;
+        this.index = index;
+        this.previousIndex = previousIndex;
+        this.version = version;
+    }
+
+    /**
+     * Returns the kind of change.
+     *
+     * @return the change type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the ID of the changed event.
+     *
+     * @return the event ID
+     */
+    public String getId() {
+        return event.getId();
+    }
+
+    /**
+     * Returns the event that was added, removed or archived, or the new version of an updated event.
+     *
+     * @return the changed event
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Returns the version of an updated event that was replaced.
+     *
+     * @return the previous version, or null unless the change is an update
+     */
+    public Event getPreviousEvent() {
+        return previousEvent;
+    }
+
+    /**
+     * Returns the position of the event among the active events: where it now is if it was
+     * added or updated, or where it was before it was removed or archived.
+     *
+     * @return the position of the event
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the position an updated event had before the update.
+     *
+     * @return the previous position, or -1 unless the change is an update
+     */
+    public int getPreviousIndex() {
+        return previousIndex;
+    }
+
+    /**
+     * Returns the number of the calendar version this change produced. Changes made together,
+     * such as the events archived by one refresh, share a version.
+     *
+     * @return the version number
+     * @see Calendar#getVersion(long)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + event.getId() + " at " + (type == Type.UPDATED ? previousIndex + " -> " : "") + index;
+    }
+}
@@ -0,0 +1,23 @@
+import java.util.EventListener;
+import java.util.List;
+
+/**
+ * Receives the changes made to a {@link Calendar}, so views can apply them one by one
+ * instead of reloading everything.
+ */
+public interface CalendarListener extends EventListener {
+    /**
+     * Called after an operation on the calendar has changed its events. Every change made by
+     * one operation is delivered in a single batch, on the thread that performed it or on
+     * another thread changing the calendar at the same time. Batches are delivered one at a
+     * time and in the order they were made; the positions in each change are only valid once
+     * the changes before it have been applied.
+     * <p>
+     * The calendar is not locked during the call, so the listener may read it, but it may
+     * already reflect later changes whose batches are still to come.
+     * </p>
+     *
+     * @param changes the changes in the order they were made
+     */
+    void calendarChanged(List<CalendarChange> changes);
+}
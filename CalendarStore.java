@@ -0,0 +1,752 @@
+import java.io.*;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Durable storage for a {@link Calendar}, made of an append-only write-ahead log of every
+ * change plus periodic snapshots of the active and past events.
+ * <p>
+ * Logs and snapshots share a generation number. Taking a snapshot rotates the log, so the
+ * snapshot of generation {@code g} holds everything written to logs older than {@code g}.
+ * Recovery loads the newest snapshot and replays the logs from its generation onwards;
+ * older files are only deleted once a newer snapshot is safely on disk. A log is opened for
+ * every generation, so the logs to replay are numbered without gaps.
+ * </p>
+ */
+public class CalendarStore implements Closeable {
+    private static final int SNAPSHOT_MAGIC = 0x43414C53; // "CALS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_RECORD_LENGTH = 64 << 20;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_UPDATE = 3;
+    private static final byte OP_ARCHIVE = 4;
+    private static final Pattern LOG_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.dat");
+    private static final Pattern SNAPSHOT_TEMP_NAME = Pattern.compile("snapshot-(\\d+)\\.tmp");
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final int snapshotEvery;
+    private final ScheduledExecutorService background;
+    /** Shares the titles and locations of the events read back, which repeat across many events. */
+    private final StringDictionary strings = new StringDictionary();
+
+    // Lock order: syncLock before logLock
+    private final Object syncLock = new Object();
+    private final Object logLock = new Object();
+    private FileOutputStream logFile;
+    private DataOutputStream log;
+    private long generation;
+    private long recoveredGeneration;
+    private volatile long durableGeneration;
+    private long written;
+    private volatile long durable;
+    private int recordsSinceSnapshot;
+    private volatile boolean snapshotInProgress;
+    private volatile IOException flushFailure;
+    private boolean closed;
+
+    /**
+     * Receives the changes read back from disk during recovery.
+     */
+    interface Replay {
+        /**
+         * Restores an active event, without checking for conflicts.
+         *
+         * @param event the event to restore
+         */
+        void add(Event event);
+
+        /**
+         * Removes an active event.
+         *
+         * @param id the ID of the event to remove
+         */
+        void remove(String id);
+
+        /**
+         * Replaces the active event with the same ID.
+         *
+         * @param event the new version of the event
+         */
+        void update(Event event);
+
+        /**
+         * Moves an active event into the history.
+         *
+         * @param id the ID of the event to archive
+         */
+        void archive(String id);
+
+        /**
+         * Restores a past event straight into the history.
+         *
+         * @param event the past event
+         */
+        void restoreHistory(Event event);
+    }
+
+    /**
+     * Opens a store in the given directory that forces the log every 100 milliseconds
+     * and takes a snapshot every 100,000 changes.
+     *
+     * @param directory the directory holding the log and snapshot files
+     * @throws IOException if the directory cannot be created
+     */
+    public CalendarStore(Path directory) throws IOException {
+        this(directory, FsyncPolicy.INTERVAL, 100, 100_000);
+    }
+
+    /**
+     * Opens a store in the given directory.
+     *
+     * @param directory           the directory holding the log and snapshot files
+     * @param policy              when the log is forced to disk
+     * @param fsyncIntervalMillis how often the log is forced under {@link FsyncPolicy#INTERVAL}
+     * @param snapshotEvery       how many logged changes trigger a new snapshot
+     * @throws IOException if the directory cannot be created
+     */
+    public CalendarStore(Path directory, FsyncPolicy policy, long fsyncIntervalMillis, int snapshotEvery) throws IOException {
+        if (snapshotEvery <= 0) {
+            throw new IllegalArgumentException("Snapshot threshold must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.policy = policy;
+        this.snapshotEvery = snapshotEvery;
+        this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "calendar-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (policy == FsyncPolicy.INTERVAL) {
+            background.scheduleWithFixedDelay(this::flushInBackground, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the directory holding the store's files.
+     *
+     * @return the store directory
+     */
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the generation of the snapshot that recovery loaded.
+     *
+     * @return the recovered snapshot generation, or 0 if recovery started from an empty store
+     */
+    long getRecoveredGeneration() {
+        return recoveredGeneration;
+    }
+
+    /**
+     * Returns the generation of the newest snapshot known to be on disk, either the one
+     * recovery loaded or one written since.
+     *
+     * @return the durable snapshot generation, or 0 if there is none
+     */
+    long getDurableGeneration() {
+        return durableGeneration;
+    }
+
+    /**
+     * Returns the generation the next call to {@link #snapshot(List, List)} will write.
+     *
+     * @return the next snapshot generation
+     */
+    long nextSnapshotGeneration() {
+        synchronized (logLock) {
+            return generation + 1;
+        }
+    }
+
+    /**
+     * Loads the newest snapshot and replays the logs written after it, then opens a fresh
+     * log for new changes. Snapshots left half-written by a crash are deleted.
+     * <p>
+     * The replay stops at the first record it cannot trust, so no record is ever applied to a
+     * state that is missing an earlier one. A torn or damaged record cuts its log short after
+     * the last good record, as a crash in the middle of a write leaves it. Any later log, and
+     * every log after a missing generation, is set aside under a {@code .skipped} name instead
+     * of being replayed, so its records are kept but never applied, and new logs carry on from
+     * the last one replayed.
+     * </p>
+     *
+     * @param replay receives the recovered state
+     * @return the number of log records replayed on top of the snapshot
+     * @throws IOException if the files cannot be read
+     */
+    int recover(Replay replay) throws IOException {
+        for (Path temp : list(SNAPSHOT_TEMP_NAME).values()) {
+            Files.delete(temp);
+        }
+        SortedMap<Long, Path> snapshots = list(SNAPSHOT_NAME);
+        SortedMap<Long, Path> logs = list(LOG_NAME);
+
+        long from = 0;
+        for (Map.Entry<Long, Path> snapshot : reversed(snapshots)) {
+            if (readSnapshot(snapshot.getValue(), replay)) {
+                from = snapshot.getKey();
+                break;
+            }
+            System.err.println("Skipping damaged snapshot " + snapshot.getValue());
+        }
+
+        int[] replayed = {0};
+        // The snapshot of generation g holds every log before g; without one, the logs start at 1
+        long expected = from == 0 ? 1 : from;
+        boolean intact = true;
+        for (Map.Entry<Long, Path> log : logs.tailMap(from).entrySet()) {
+            if (intact && log.getKey() == expected) {
+                intact = replayLog(log.getValue(), replay, replayed);
+                expected++;
+            } else {
+                intact = false;
+                Path path = log.getValue();
+                System.err.println("Setting aside " + path + ", written after a missing or damaged log record");
+                Files.move(path, path.resolveSibling(path.getFileName() + ".skipped-" + System.currentTimeMillis()));
+                forceDirectory();
+            }
+        }
+
+        long last = expected - 1;
+        if (intact) {
+            last = Math.max(from, logs.isEmpty() ? 0 : logs.lastKey());
+            if (!snapshots.isEmpty()) {
+                last = Math.max(last, snapshots.lastKey());
+            }
+        }
+        synchronized (logLock) {
+            recoveredGeneration = from;
+            durableGeneration = from;
+            generation = last + 1;
+            openLog();
+            recordsSinceSnapshot = replayed[0];
+        }
+        return replayed[0];
+    }
+
+    /**
+     * Logs that an event was added.
+     *
+     * @param event the added event
+     * @return the sequence number to pass to {@link #commit(long)}
+     * @throws IOException if the log cannot be written
+     */
+    long logAdd(Event event) throws IOException {
+        return append(encode(OP_ADD, event, null));
+    }
+
+    /**
+     * Logs that many events were added, so that one {@link #commit(long)} covers them all.
+     *
+     * @param events the added events
+     * @return the sequence number of the last record, to pass to {@link #commit(long)}
+     * @throws IOException if the log cannot be written
+     */
+    long logAddAll(List<Event> events) throws IOException {
+        return appendAll(OP_ADD, events);
+    }
+
+    /**
+     * Logs that many events were moved into the history, so that one {@link #commit(long)}
+     * covers them all.
+     *
+     * @param events the archived events
+     * @return the sequence number of the last record, to pass to {@link #commit(long)}
+     * @throws IOException if the log cannot be written
+     */
+    long logArchiveAll(List<Event> events) throws IOException {
+        return appendAll(OP_ARCHIVE, events);
+    }
+
+    /**
+     * Makes the records up to the given one durable if every write is to be forced, and does
+     * nothing under the other policies. Commits that wait for the same force share it, so
+     * writers that log while a force is in progress are all committed by the next one. If the
+     * force fails, the store refuses every later write and commit, since it can no longer tell
+     * which records reached the disk.
+     *
+     * @param sequence the sequence number returned by the last log call
+     * @throws IOException if the log cannot be forced
+     */
+    void commit(long sequence) throws IOException {
+        if (policy == FsyncPolicy.ALWAYS) {
+            sync(sequence);
+        }
+    }
+
+    /**
+     * Checks whether {@link #commit(long)} forces the log, and so may block and fail.
+     *
+     * @return true if every commit is forced
+     */
+    boolean forcesCommits() {
+        return policy == FsyncPolicy.ALWAYS;
+    }
+
+    /**
+     * Returns the sequence number of the last record known to be on disk.
+     *
+     * @return the last durable sequence number, or 0 if none is known yet
+     */
+    long getDurableSequence() {
+        return durable;
+    }
+
+    /**
+     * Logs that an event was removed.
+     *
+     * @param id the ID of the removed event
+     * @return the sequence number to pass to {@link #commit(long)}
+     * @throws IOException if the log cannot be written
+     */
+    long logRemove(String id) throws IOException {
+        return append(encode(OP_REMOVE, null, id));
+    }
+
+    /**
+     * Logs that an event was replaced by a new version with the same ID.
+     *
+     * @param event the new version of the event
+     * @return the sequence number to pass to {@link #commit(long)}
+     * @throws IOException if the log cannot be written
+     */
+    long logUpdate(Event event) throws IOException {
+        return append(encode(OP_UPDATE, event, null));
+    }
+
+    /**
+     * Checks whether enough changes have been logged since the last snapshot to take another one.
+     *
+     * @return true if a snapshot is due and none is being written
+     */
+    boolean isSnapshotDue() {
+        synchronized (logLock) {
+            return recordsSinceSnapshot >= snapshotEvery && !snapshotInProgress;
+        }
+    }
+
+    /**
+     * Rotates the log and writes a snapshot of the given state in the background.
+     * The lists must not be modified afterwards; they are written as they are.
+     *
+     * @param active  the active events at the time of the rotation
+     * @param history the past events at the time of the rotation
+     * @throws IOException if the log cannot be rotated
+     */
+    void snapshot(List<Event> active, List<Event> history) throws IOException {
+        long snapshotGeneration;
+        synchronized (syncLock) {
+            synchronized (logLock) {
+                ensureOpen();
+                try {
+                    closeLog();
+                } catch (IOException e) {
+                    flushFailure = e;
+                    throw e;
+                }
+                generation++;
+                openLog();
+                recordsSinceSnapshot = 0;
+                snapshotInProgress = true;
+                snapshotGeneration = generation;
+            }
+        }
+        background.execute(() -> {
+            try {
+                writeSnapshot(snapshotGeneration, active, history);
+                durableGeneration = snapshotGeneration;
+                deleteOlderThan(snapshotGeneration);
+            } catch (IOException e) {
+                // The previous snapshot and every log since are still in place, so nothing is lost
+                System.err.println("Failed to write calendar snapshot: " + e.getMessage());
+            } finally {
+                snapshotInProgress = false;
+            }
+        });
+    }
+
+    /**
+     * Forces every logged change to disk, waits for a running snapshot and closes the log.
+     *
+     * @throws IOException if the log cannot be forced or closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (logLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                closeLog();
+            }
+        }
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long appendAll(byte op, List<Event> events) throws IOException {
+        IOException failure = flushFailure;
+        if (failure != null) {
+            throw new IOException("Write-ahead log is no longer being flushed", failure);
+        }
+        long sequence;
+        synchronized (logLock) {
+            ensureOpen();
+            for (Event event : events) {
+                log.write(op == OP_ADD ? encode(op, event, null) : encode(op, null, event.getId()));
+            }
+            written += events.size();
+            sequence = written;
+            recordsSinceSnapshot += events.size();
+        }
+        return sequence;
+    }
+
+    private long append(byte[] record) throws IOException {
+        IOException failure = flushFailure;
+        if (failure != null) {
+            throw new IOException("Write-ahead log is no longer being flushed", failure);
+        }
+        long sequence;
+        synchronized (logLock) {
+            ensureOpen();
+            log.write(record);
+            sequence = ++written;
+            recordsSinceSnapshot++;
+        }
+        return sequence;
+    }
+
+    /**
+     * Forces the log up to at least the given record. Forces are made one at a time and each
+     * covers every record written before it starts, so a caller whose record was covered while
+     * it waited for its turn returns straight away. Records are only grouped this way if they
+     * are written while a force is in progress, which is up to the callers. After a failed
+     * force no other is attempted, as the failure may have dropped records a retry would
+     * report as durable.
+     */
+    private void sync(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (durable >= sequence) {
+                return;
+            }
+            IOException failure = flushFailure;
+            if (failure != null) {
+                throw new IOException("Write-ahead log is no longer being flushed", failure);
+            }
+            FileChannel channel;
+            long target;
+            synchronized (logLock) {
+                if (logFile == null) {
+                    return; // Rotation or close already forced everything
+                }
+                log.flush();
+                channel = logFile.getChannel();
+                target = written;
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                flushFailure = e;
+                throw e;
+            }
+            durable = target;
+        }
+    }
+
+    /**
+     * Forces every record logged so far to disk, whatever the fsync policy.
+     *
+     * @throws IOException if the log cannot be forced
+     */
+    void force() throws IOException {
+        long target;
+        synchronized (logLock) {
+            target = written;
+        }
+        sync(target);
+    }
+
+    private void flushInBackground() {
+        try {
+            force();
+        } catch (IOException e) {
+            flushFailure = e;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Calendar store is closed");
+        }
+        if (log == null) {
+            throw new IOException("Calendar store has not been recovered");
+        }
+    }
+
+    private void openLog() throws IOException {
+        logFile = new FileOutputStream(directory.resolve("wal-" + generation + ".log").toFile(), true);
+        log = new DataOutputStream(new BufferedOutputStream(logFile, 1 << 16));
+    }
+
+    private void closeLog() throws IOException {
+        if (logFile == null) {
+            return;
+        }
+        log.flush();
+        logFile.getChannel().force(false);
+        durable = written;
+        log.close();
+        logFile = null;
+        log = null;
+    }
+
+    private void writeSnapshot(long snapshotGeneration, List<Event> active, List<Event> history) throws IOException {
+        Path target = directory.resolve("snapshot-" + snapshotGeneration + ".dat");
+        Path temp = directory.resolve("snapshot-" + snapshotGeneration + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            BufferedOutputStream buffered = new BufferedOutputStream(file, 1 << 16);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(snapshotGeneration);
+            out.writeInt(active.size());
+            for (Event event : active) {
+                writeEvent(out, event);
+            }
+            out.writeInt(history.size());
+            for (Event event : history) {
+                writeEvent(out, event);
+            }
+            new DataOutputStream(buffered).writeLong(crc.getValue());
+            buffered.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+    }
+
+    private boolean readSnapshot(Path path, Replay replay) throws IOException {
+        List<Event> active = new ArrayList<>();
+        List<Event> history = new ArrayList<>();
+        try (BufferedInputStream buffered = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != FORMAT_VERSION) {
+                return false;
+            }
+            in.readLong();
+            for (int count = in.readInt(); count > 0; count--) {
+                active.add(readEvent(in));
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                history.add(readEvent(in));
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(buffered).readLong() != expected) {
+                return false;
+            }
+        } catch (EOFException | IllegalArgumentException e) {
+            return false;
+        }
+        // Only apply a snapshot once it has been read and verified in full
+        for (Event event : active) {
+            replay.add(event);
+        }
+        for (Event event : history) {
+            replay.restoreHistory(event);
+        }
+        return true;
+    }
+
+    /**
+     * Replays the records of one log up to its end or its first torn or damaged record, and
+     * truncates a log cut short that way after its last good record.
+     *
+     * @param replayed incremented for every record replayed
+     * @return true if the whole log was replayed, false if it was cut short
+     */
+    private boolean replayLog(Path path, Replay replay, int[] replayed) throws IOException {
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (true) {
+                byte[] payload = readRecord(in);
+                if (payload == null) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte op = record.readByte();
+                switch (op) {
+                    case OP_ADD:
+                        replay.add(readEvent(record));
+                        break;
+                    case OP_REMOVE:
+                        replay.remove(readString(record));
+                        break;
+                    case OP_UPDATE:
+                        replay.update(readEvent(record));
+                        break;
+                    case OP_ARCHIVE:
+                        replay.archive(readString(record));
+                        break;
+                    default:
+                        throw new IOException("Unknown log operation " + op + " in " + path);
+                }
+                replayed[0]++;
+                good += 8 + payload.length;
+            }
+        }
+        if (good == Files.size(path)) {
+            return true;
+        }
+        System.err.println("Truncating " + path + " after its last intact record");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(good);
+            channel.force(true);
+        }
+        return false;
+    }
+
+    /**
+     * Reads one framed record, returning null at the end of the log or at a torn or damaged record.
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(byte op, Event event, String id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(op);
+        if (event != null) {
+            writeEvent(payload, event);
+        } else {
+            writeString(payload, id);
+        }
+        byte[] body = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(body.length + 8);
+        DataOutputStream out = new DataOutputStream(framed);
+        out.writeInt(body.length);
+        out.writeInt((int) crc.getValue());
+        out.write(body);
+        return framed.toByteArray();
+    }
+
+    private static void writeEvent(DataOutput out, Event event) throws IOException {
+        writeString(out, event.getTitle());
+        out.writeLong(event.getStartMillis());
+        out.writeLong(event.getEndMillis());
+        writeString(out, event.getLocation());
+        writeString(out, event.getId());
+        writeString(out, event.getDescription());
+        writeString(out, event.getPriority());
+    }
+
+    private Event readEvent(DataInput in) throws IOException {
+        String title = strings.share(readString(in));
+        long start = in.readLong();
+        long end = in.readLong();
+        String location = strings.share(readString(in));
+        String id = readString(in);
+        String description = readString(in);
+        String priority = readString(in);
+        return new Event(title, start, end, location, id, description, priority);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_RECORD_LENGTH) {
+            throw new EOFException("String length out of range");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private SortedMap<Long, Path> list(Pattern pattern) throws IOException {
+        SortedMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                Matcher matcher = pattern.matcher(entry.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), entry);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static List<Map.Entry<Long, Path>> reversed(SortedMap<Long, Path> files) {
+        List<Map.Entry<Long, Path>> entries = new ArrayList<>(files.entrySet());
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    private void deleteOlderThan(long snapshotGeneration) throws IOException {
+        for (Path path : list(SNAPSHOT_NAME).headMap(snapshotGeneration).values()) {
+            Files.deleteIfExists(path);
+        }
+        for (Path path : list(LOG_NAME).headMap(snapshotGeneration).values()) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can force a directory; the rename is still atomic
+        }
+    }
+}
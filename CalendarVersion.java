@@ -0,0 +1,163 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The active events of a {@link Calendar} as they were after one particular change. A version
+ * never changes, so it can be read from any thread without locking, for as long as needed,
+ * while the calendar moves on: every read of one version agrees with every other.
+ * <p>
+ * Versions are cheap. Each change to the calendar copies only the O(log n) index nodes it
+ * touches and shares the rest with the version before it.
+ * </p>
+ */
+public final class CalendarVersion {
+    private final long number;
+    private final IntervalTree intervals;
+    private final IdMap eventsById;
+
+    CalendarVersion(long number, IntervalTree intervals, IdMap eventsById) {
+        this.number = number;
+        this.intervals = intervals;
+        this.eventsById = eventsById;
+    }
+
+    /**
+     * Returns the number of this version. The first version of a calendar is 0, and each
+     * change to its active events produces the next number.
+     *
+     * @return the version number
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the number of active events.
+     *
+     * @return the number of active events
+     */
+    public int getEventCount() {
+        return intervals.size();
+    }
+
+    /**
+     * Returns the active event at the given position in start-time order, in O(log n) time.
+     *
+     * @param index the position, from 0 to {@code getEventCount() - 1}
+     * @return the event at that position
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public Event getEventAt(int index) {
+        return intervals.get(index);
+    }
+
+    /**
+     * Retrieves an active event by its ID.
+     *
+     * @param id the ID of the event
+     * @return the event, or null if no active event has that ID
+     */
+    public Event getEventById(String id) {
+        return eventsById.get(id);
+    }
+
+    /**
+     * Returns the position of an active event in start-time order, in O(log n) time.
+     *
+     * @param id the ID of the event
+     * @return the position of the event, or -1 if no active event has that ID
+     */
+    public int indexOfEvent(String id) {
+        Event event = eventsById.get(id);
+        return event == null ? -1 : intervals.indexOf(event.getStartMillis(), id);
+    }
+
+    /**
+     * Returns the active events in start-time order. The collection is read-only and, like the
+     * version, never changes.
+     *
+     * @return the active events ordered by start time
+     */
+    public Collection<Event> getEvents() {
+        return intervals.values();
+    }
+
+    /**
+     * Finds the active events that overlap the half-open range [start, end).
+     *
+     * @param start the start of the range (inclusive)
+     * @param end   the end of the range (exclusive)
+     * @return the overlapping events, ordered by start time
+     */
+    public List<Event> findOverlappingEvents(LocalDateTime start, LocalDateTime end) {
+        List<Event> overlapping = new ArrayList<>();
+        intervals.collectOverlapping(Calendar.epochMillis(start), Calendar.epochMillis(end), false, overlapping);
+        return overlapping;
+    }
+
+    /**
+     * Returns the active events starting within the half-open range [from, to).
+     *
+     * @param from the earliest start time (inclusive)
+     * @param to   the latest start time (exclusive)
+     * @return the matching events, ordered by start time
+     */
+    public List<Event> getEventsStartingBetween(LocalDateTime from, LocalDateTime to) {
+        List<Event> starting = new ArrayList<>();
+        intervals.collectStartingBetween(Calendar.epochMillis(from), Calendar.epochMillis(to), starting);
+        return starting;
+    }
+
+    /**
+     * Finds the first active event starting at or after the given time in epoch milliseconds.
+     *
+     * @param millis the reference time
+     * @return the event, or null if there is none
+     */
+    Event ceiling(long millis) {
+        int index = intervals.rank(millis, null);
+        return index < intervals.size() ? intervals.get(index) : null;
+    }
+
+    /**
+     * Finds the last active event starting before the given time in epoch milliseconds.
+     *
+     * @param millis the reference time
+     * @return the event, or null if there is none
+     */
+    Event lower(long millis) {
+        int index = intervals.rank(millis, null);
+        return index > 0 ? intervals.get(index - 1) : null;
+    }
+
+    /**
+     * Returns the active events in start-time order as a new list.
+     *
+     * @return the active events ordered by start time
+     */
+    public List<Event> sortEvents() {
+        return new ArrayList<>(intervals.values());
+    }
+
+    IntervalTree getIntervals() {
+        return intervals;
+    }
+
+    IdMap getEventsById() {
+        return eventsById;
+    }
+
+    /**
+     * Returns whether this version is the current one of a calendar that holds the given indexes.
+     */
+    boolean holds(IntervalTree intervals, IdMap eventsById) {
+        return this.intervals == intervals && this.eventsById == eventsById;
+    }
+
+    @Override
+    public String toString() {
+        return "Version " + number + " (" + intervals.size() + " events)";
+    }
+}
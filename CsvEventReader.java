@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Reads events from comma-separated values (RFC 4180), one row at a time, through a fixed-size
+ * buffer, so files of any size can be read in constant memory.
+ * <p>
+ * The first row names the columns: title, start, end, location, id, description and priority,
+ * in any order and any case. Only start is required; other columns are ignored. Times are
+ * either ISO local date-times such as {@code 2025-03-14T09:05} or in the table format
+ * {@code 03/14/2025 09:05}. A missing end makes an event of no length, and a missing ID is
+ * derived from the start and title, as {@link ICalendarReader} does. Fields may be quoted, and
+ * quoted fields may hold commas, doubled quotes and line breaks.
+ * </p>
+ * <p>
+ * Rows that cannot be read, such as those with a malformed time or ending before they start,
+ * are skipped; {@link #getSkippedCount()} says how many.
+ * </p>
+ */
+public class CsvEventReader implements EventReader {
+    /** The longest row accepted, in characters, so a malformed file cannot exhaust memory. */
+    static final int MAX_ROW_LENGTH = 1 << 20;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] COLUMNS = {"title", "start", "end", "location", "id", "description", "priority"};
+    private static final int TITLE = 0, START = 1, END = 2, LOCATION = 3, ID = 4, DESCRIPTION = 5, PRIORITY = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> row = new ArrayList<>();
+    private final StringDictionary strings = new StringDictionary();
+    private int rowLength;
+    private int[] columns;
+    private long rowNumber;
+    private int skipped;
+
+    /**
+     * Constructs a reader over a character stream. The header row is read with the first event.
+     *
+     * @param in the comma-separated text
+     */
+    public CsvEventReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Opens a reader over a UTF-8 file, replacing any malformed bytes.
+     *
+     * @param path the file to read
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+    public static CsvEventReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new CsvEventReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE));
+    }
+
+    /**
+     * Reads the next event.
+     *
+     * @return the next event, or null at the end of the stream
+     * @throws IOException if the stream cannot be read, has no start column or holds a row
+     *                     longer than {@value #MAX_ROW_LENGTH} characters
+     */
+    @Override
+    public Event next() throws IOException {
+        if (columns == null && !readHeader()) {
+            return null;
+        }
+        while (readRow()) {
+            Event event = toEvent();
+            if (event != null) {
+                return event;
+            }
+            skipped++;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of rows read so far that were skipped because they could not be read.
+     *
+     * @return the number of skipped rows
+     */
+    @Override
+    public int getSkippedCount() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the header row and maps each known column to its position.
+     *
+     * @return false if the stream is empty
+     */
+    private boolean readHeader() throws IOException {
+        if (!readRow()) {
+            return false;
+        }
+        columns = new int[COLUMNS.length];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < row.size(); i++) {
+            String name = row.get(i).trim().toLowerCase(Locale.ROOT);
+            if (i == 0 && name.startsWith("\uFEFF")) {
+                name = name.substring(1); // A byte order mark left by spreadsheet exports
+            }
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (COLUMNS[column].equals(name) && columns[column] < 0) {
+                    columns[column] = i;
+                }
+            }
+        }
+        if (columns[START] < 0) {
+            throw new IOException("CSV header has no start column: " + row);
+        }
+        return true;
+    }
+
+    /**
+     * Builds an event from the current row.
+     *
+     * @return the event, or null if the row cannot be read
+     */
+    private Event toEvent() {
+        String title = column(TITLE);
+        String start = column(START);
+        String end = column(END);
+        try {
+            LocalDateTime startTime = parseTime(start);
+            LocalDateTime endTime = end.isEmpty() ? startTime : parseTime(end);
+            if (endTime.isBefore(startTime)) {
+                return null;
+            }
+            String id = column(ID);
+            if (id.isEmpty()) {
+                id = UUID.nameUUIDFromBytes((startTime + "\n" + title).getBytes(StandardCharsets.UTF_8)).toString();
+            }
+            return new Event(strings.share(title), startTime, endTime, strings.share(column(LOCATION)), id, column(DESCRIPTION), column(PRIORITY));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private String column(int column) {
+        int index = columns[column];
+        return index >= 0 && index < row.size() ? row.get(index) : "";
+    }
+
+    private static LocalDateTime parseTime(String text) {
+        String time = text.trim();
+        return time.indexOf('/') >= 0 ? LocalDateTime.parse(time, EventFormat.TABLE) : LocalDateTime.parse(time);
+    }
+
+    /**
+     * Reads the fields of the next non-blank row into {@link #row}.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean readRow() throws IOException {
+        row.clear();
+        field.setLength(0);
+        rowLength = 0;
+        boolean quoted = false;
+        boolean any = false;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (quoted || any || field.length() > 0) {
+                    row.add(field.toString()); // The last row need not end with a line break
+                    rowNumber++;
+                    return true;
+                }
+                return false;
+            }
+            if (++rowLength > MAX_ROW_LENGTH) {
+                throw new IOException("Row " + (rowNumber + 1) + " is longer than " + MAX_ROW_LENGTH + " characters");
+            }
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                any = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+                any = true;
+            } else if (c == '\n') {
+                if (!any && field.length() == 0) {
+                    rowLength = 0;
+                    continue; // A blank line
+                }
+                row.add(field.toString());
+                rowNumber++;
+                return true;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+}
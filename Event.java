@@ -1,18 +1,25 @@
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Objects;
 
 /**
  * Represents an event with a title, start and end times, location, ID, description, and priority.
+ * <p>
+ * Times are held as epoch milliseconds rather than {@link LocalDateTime} objects, and a priority
+ * equal to one of the {@link Priority} labels shares that label's string, since nearly every event
+ * repeats one of them.
+ * </p>
  */
 public class Event {
-    private String title;
-    private LocalDateTime startTime;
-    private LocalDateTime endTime;
-    private String location;
-    private String id;
-    private String description;
-    private String priority;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final String title;
+    private final long startMillis;
+    private final long endMillis;
+    private final String location;
+    private final String id;
+    private final String description;
+    private final String priority;
 
     /**
      * Constructs an Event with the specified details.
@@ -27,27 +34,45 @@ public class Event {
      * @throws IllegalArgumentException if the end time is before the start time
      */
     public Event(String title, LocalDateTime startTime, LocalDateTime endTime, String location, String id, String description, String priority) {
+        this(title, Calendar.epochMillis(startTime), Calendar.epochMillis(endTime), location, id, description, priority);
+    }
+
+    /**
+     * Constructs an Event from times already converted to epoch milliseconds, as read back from storage.
+     *
+     * @param title       the title of the event
+     * @param startMillis the start time in milliseconds since 1970-01-01T00:00
+     * @param endMillis   the end time in milliseconds since 1970-01-01T00:00
+     * @param location    the location of the event
+     * @param id          the unique identifier for the event
+     * @param description a description of the event
+     * @param priority    the priority level of the event
+     * @throws IllegalArgumentException if the end time is before the start time
+     */
+    Event(String title, long startMillis, long endMillis, String location, String id, String description, String priority) {
+        if (endMillis < startMillis) {
+            throw new IllegalArgumentException("End time cannot be before start time");
+        }
         this.title = title;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
         this.location = location;
         this.id = id;
         this.description = description;
-        this.priority = priority;
-        setStartAndEndTime(startTime, endTime);
+        this.priority = canonicalPriority(priority);
     }
 
     /**
-     * Sets the start and end times for the event.
-     *
-     * @param startTime the start time of the event
-     * @param endTime   the end time of the event
-     * @throws IllegalArgumentException if the end time is before the start time
+     * Returns the string of the matching {@link Priority} label, so events do not each hold a copy.
+     * Any other value, including a label in different case, is kept as it is.
      */
-    public void setStartAndEndTime(LocalDateTime startTime, LocalDateTime endTime) {
-        if (endTime.isBefore(startTime)) {
-            throw new IllegalArgumentException("End time cannot be before start time");
+    private static String canonicalPriority(String priority) {
+        for (Priority level : PRIORITIES) {
+            if (level.getLabel().equals(priority)) {
+                return level.getLabel();
+            }
         }
-        this.startTime = startTime;
-        this.endTime = endTime;
+        return priority;
     }
 
     /**
@@ -65,7 +90,16 @@ public class Event {
      * @return the start time of the event
      */
     public LocalDateTime getStartTime() {
-        return startTime;
+        return Calendar.fromEpochMillis(startMillis);
+    }
+
+    /**
+     * Returns the start time of the event without allocating a date-time object.
+     *
+     * @return the start time in milliseconds since 1970-01-01T00:00
+     */
+    public long getStartMillis() {
+        return startMillis;
     }
 
     /**
@@ -74,7 +108,16 @@ public class Event {
      * @return the end time of the event
      */
     public LocalDateTime getEndTime() {
-        return endTime;
+        return Calendar.fromEpochMillis(endMillis);
+    }
+
+    /**
+     * Returns the end time of the event without allocating a date-time object.
+     *
+     * @return the end time in milliseconds since 1970-01-01T00:00
+     */
+    public long getEndMillis() {
+        return endMillis;
     }
 
     /**
@@ -113,6 +156,15 @@ public class Event {
         return priority;
     }
 
+    /**
+     * Returns the priority of the event as one of the known levels.
+     *
+     * @return the priority level, or null if the priority is not High, Medium or Low
+     */
+    public Priority getPriorityLevel() {
+        return Priority.fromLabel(priority);
+    }
+
     /**
      * Returns a string representation of the event.
      *
@@ -120,9 +172,45 @@ public class Event {
      */
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy h:mm a");
-        return String.format("Event Title: %s\nStart Time: %s\nEnd Time: %s\nLocation: %s\nID: %s\nDescription: %s\nPriority: %s\n",
-                title, startTime.format(formatter), endTime.format(formatter), location, id, description, priority);
+        StringBuilder text = new StringBuilder(192);
+        formatTo(text);
+        return text.toString();
+    }
+
+    /**
+     * Writes the same text as {@link #toString()} to a buffer without creating intermediate
+     * strings or date-time objects, so a reused buffer produces no garbage per event.
+     *
+     * @param out the buffer to append to
+     * @return the buffer
+     */
+    public StringBuilder formatTo(StringBuilder out) {
+        try {
+            formatTo((Appendable) out);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder never throws
+        }
+        return out;
+    }
+
+    /**
+     * Writes the same text as {@link #toString()} to any destination, such as a
+     * {@link java.io.Writer}, without creating intermediate strings or date-time objects.
+     *
+     * @param out the destination
+     * @throws IOException if the destination cannot be written
+     */
+    public void formatTo(Appendable out) throws IOException {
+        out.append("Event Title: ").append(title);
+        out.append("\nStart Time: ");
+        EventFormat.appendDisplay(out, startMillis);
+        out.append("\nEnd Time: ");
+        EventFormat.appendDisplay(out, endMillis);
+        out.append("\nLocation: ").append(location)
+                .append("\nID: ").append(id)
+                .append("\nDescription: ").append(description)
+                .append("\nPriority: ").append(priority)
+                .append('\n');
     }
 
     /**
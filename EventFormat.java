@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Shared date-time formats for displaying events, plus allocation-free writers for them.
+ * The writers work straight from epoch milliseconds, so rendering a row or a summary entry
+ * does not create date-time objects, formatters or intermediate strings.
+ */
+final class EventFormat {
+    /** The format used in event details, e.g. "03/14/2025 9:05 AM". */
+    static final DateTimeFormatter DISPLAY = DateTimeFormatter.ofPattern("MM/dd/yyyy h:mm a");
+    /** The format used in event tables, e.g. "03/14/2025 09:05". */
+    static final DateTimeFormatter TABLE = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm");
+    /** The format used for dates entered by the user, e.g. "03/14/2025". */
+    static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    // Taken from the display formatter so the markers match its locale
+    private static final String AM = DateTimeFormatter.ofPattern("a").format(LocalTime.MIDNIGHT);
+    private static final String PM = DateTimeFormatter.ofPattern("a").format(LocalTime.NOON);
+
+    private EventFormat() {
+    }
+
+    /**
+     * Writes a time in the {@link #DISPLAY} format.
+     *
+     * @param out    the destination
+     * @param millis the time in milliseconds since 1970-01-01T00:00
+     * @throws IOException if the destination cannot be written
+     */
+    static void appendDisplay(Appendable out, long millis) throws IOException {
+        appendDate(out, millis);
+        int minuteOfDay = (int) (Math.floorMod(millis, MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+        int hour = minuteOfDay / 60;
+        int clockHour = hour % 12 == 0 ? 12 : hour % 12;
+        out.append(' ');
+        if (clockHour >= 10) {
+            out.append((char) ('0' + clockHour / 10));
+        }
+        out.append((char) ('0' + clockHour % 10)).append(':');
+        appendTwoDigits(out, minuteOfDay % 60);
+        out.append(' ').append(hour < 12 ? AM : PM);
+    }
+
+    /**
+     * Writes a time in the {@link #TABLE} format.
+     *
+     * @param out    the destination
+     * @param millis the time in milliseconds since 1970-01-01T00:00
+     * @throws IOException if the destination cannot be written
+     */
+    static void appendTable(Appendable out, long millis) throws IOException {
+        appendDate(out, millis);
+        int minuteOfDay = (int) (Math.floorMod(millis, MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+        out.append(' ');
+        appendTwoDigits(out, minuteOfDay / 60);
+        out.append(':');
+        appendTwoDigits(out, minuteOfDay % 60);
+    }
+
+    /**
+     * Formats a time in the {@link #TABLE} format, allocating only the resulting string.
+     *
+     * @param millis the time in milliseconds since 1970-01-01T00:00
+     * @return the formatted time
+     */
+    static String table(long millis) {
+        StringBuilder text = new StringBuilder(16);
+        try {
+            appendTable(text, millis);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder never throws
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the date part, MM/dd/yyyy, converting the epoch day with the proleptic
+     * Gregorian civil-from-days algorithm.
+     */
+    private static void appendDate(Appendable out, long millis) throws IOException {
+        long days = Math.floorDiv(millis, MILLIS_PER_DAY) + 719_468;
+        long era = Math.floorDiv(days, 146_097);
+        long dayOfEra = days - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendTwoDigits(out, month);
+        out.append('/');
+        appendTwoDigits(out, day);
+        out.append('/');
+        if (year >= 0 && year <= 9999) {
+            int y = (int) year;
+            out.append((char) ('0' + y / 1000)).append((char) ('0' + y / 100 % 10))
+                    .append((char) ('0' + y / 10 % 10)).append((char) ('0' + y % 10));
+        } else {
+            out.append(DateTimeFormatter.ofPattern("yyyy").format(Calendar.fromEpochMillis(millis)));
+        }
+    }
+
+    private static void appendTwoDigits(Appendable out, int value) throws IOException {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
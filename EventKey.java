@@ -0,0 +1,109 @@
+/**
+ * Orders events by a point in time, usually their start time, breaking ties on the event ID
+ * so that events sharing a minute still have distinct positions in the calendar's indexes.
+ */
+final class EventKey implements Comparable<EventKey> {
+    private final long timeMillis;
+    private final String id;
+
+    /**
+     * Constructs a key from a time and an event ID.
+     *
+     * @param timeMillis the time in epoch milliseconds
+     * @param id         the event ID, or null for the lowest key at that time
+     */
+    EventKey(long timeMillis, String id) {
+        this.timeMillis = timeMillis;
+        this.id = id;
+    }
+
+    /**
+     * Returns the key under which the given event is indexed.
+     *
+     * @param event the event
+     * @return the key of the event
+     */
+    static EventKey of(Event event) {
+        return new EventKey(event.getStartMillis(), event.getId());
+    }
+
+    /**
+     * Returns the key under which the given event is indexed by end time.
+     *
+     * @param event the event
+     * @return the end-time key of the event
+     */
+    static EventKey ofEnd(Event event) {
+        return new EventKey(event.getEndMillis(), event.getId());
+    }
+
+    /**
+     * Returns a key that sorts before every event keyed at the given time.
+     *
+     * @param timeMillis the time in epoch milliseconds
+     * @return the lowest key for that time
+     */
+    static EventKey lowest(long timeMillis) {
+        return new EventKey(timeMillis, null);
+    }
+
+    /**
+     * Returns the time of this key.
+     *
+     * @return the time in epoch milliseconds
+     */
+    long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Returns the event ID of this key.
+     *
+     * @return the event ID, or null for a lowest key
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Compares two keys by time and then by event ID, with a null ID sorting first.
+     *
+     * @param other the key to compare to
+     * @return a negative number, zero or a positive number as this key sorts before, with or after the other
+     */
+    @Override
+    public int compareTo(EventKey other) {
+        int result = Long.compare(timeMillis, other.timeMillis);
+        if (result != 0) {
+            return result;
+        }
+        return compareIds(id, other.id);
+    }
+
+    /**
+     * Compares two event IDs, with a null ID sorting first.
+     *
+     * @param first  the first ID
+     * @param second the second ID
+     * @return a negative number, zero or a positive number as the first ID sorts before, with or after the second
+     */
+    static int compareIds(String first, String second) {
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        return first.compareTo(second);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EventKey key = (EventKey) o;
+        return timeMillis == key.timeMillis && compareIds(id, key.id) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(timeMillis) * 31 + (id == null ? 0 : id.hashCode());
+    }
+}
@@ -0,0 +1,47 @@
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+import java.awt.Component;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Renders an event as a single line: its times, title, location and priority. The full
+ * details are left to {@link Event#toString()}.
+ */
+class EventListCellRenderer extends DefaultListCellRenderer {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A typical event, for {@link JList#setPrototypeCellValue(Object)} so that a list sizes its
+     * cells from this one event instead of measuring every row.
+     */
+    static final Event PROTOTYPE = new Event("Quarterly planning meeting with the team",
+            LocalDateTime.of(2000, 12, 28, 23, 0), LocalDateTime.of(2000, 12, 28, 23, 30),
+            "Main conference room", "", "", "Medium");
+
+    // Rendering only happens on the event dispatch thread, so one buffer serves every cell
+    private final StringBuilder text = new StringBuilder(128);
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        if (value instanceof Event) {
+            Event event = (Event) value;
+            text.setLength(0);
+            try {
+                EventFormat.appendTable(text, event.getStartMillis());
+                text.append(" - ");
+                EventFormat.appendTable(text, event.getEndMillis());
+            } catch (IOException e) {
+                throw new AssertionError(e); // StringBuilder never throws
+            }
+            text.append("   ").append(event.getTitle());
+            if (event.getLocation() != null && !event.getLocation().isEmpty()) {
+                text.append(" @ ").append(event.getLocation());
+            }
+            text.append("   [").append(event.getPriority()).append(']');
+            value = text.toString();
+        }
+        return super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+    }
+}
@@ -0,0 +1,103 @@
+import javax.swing.AbstractListModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A list model over a list of events that is either replaced as a whole, such as a search
+ * result, or grows as events are loaded or arrive, such as the history. A replacing list is
+ * shown as it is, without copying, and a {@link javax.swing.JList} only renders the rows in
+ * view, so large results cost no more to show than small ones.
+ */
+class EventListModel extends AbstractListModel<Event> {
+    private static final long serialVersionUID = 1L;
+
+    private List<Event> events = Collections.emptyList();
+    private boolean owned;
+
+    /**
+     * Replaces the events shown. The list is not copied and must not be changed afterwards.
+     *
+     * @param events the events to show
+     */
+    void setEvents(List<Event> events) {
+        int removed = this.events.size();
+        this.events = Collections.emptyList();
+        if (removed > 0) {
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        this.events = events;
+        this.owned = false;
+        if (!events.isEmpty()) {
+            fireIntervalAdded(this, 0, events.size() - 1);
+        }
+    }
+
+    /**
+     * Removes every event.
+     */
+    void clear() {
+        setEvents(Collections.emptyList());
+    }
+
+    /**
+     * Adds events after the ones already shown.
+     *
+     * @param added the events to add
+     */
+    void append(List<Event> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        if (!owned) {
+            events = new ArrayList<>(events);
+            owned = true;
+        }
+        int first = events.size();
+        events.addAll(added);
+        fireIntervalAdded(this, first, events.size() - 1);
+    }
+
+    /**
+     * Adds events at their positions in an order that the events shown already follow,
+     * skipping any event that the order ranks equal to one already shown.
+     *
+     * @param added the events to add, in any order
+     * @param order the order of the events shown
+     */
+    void insertSorted(List<Event> added, Comparator<? super Event> order) {
+        for (Event event : added) {
+            int position = Collections.binarySearch(events, event, order);
+            if (position >= 0) {
+                continue;
+            }
+            if (!owned) {
+                events = new ArrayList<>(events);
+                owned = true;
+            }
+            int index = -position - 1;
+            events.add(index, event);
+            fireIntervalAdded(this, index, index);
+        }
+    }
+
+    /**
+     * Returns the events shown.
+     *
+     * @return the events, in display order
+     */
+    List<Event> getEvents() {
+        return events;
+    }
+
+    @Override
+    public int getSize() {
+        return events.size();
+    }
+
+    @Override
+    public Event getElementAt(int index) {
+        return events.get(index);
+    }
+}
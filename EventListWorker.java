@@ -0,0 +1,93 @@
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Reads events on a background thread and appends them to a list model as it goes, a chunk
+ * at a time, so the first events show up while the rest are still being read and the event
+ * dispatch thread only ever appends finished chunks. Cancelling the worker stops the reading
+ * and discards any chunk not yet appended.
+ */
+class EventListWorker extends SwingWorker<Event, Void> {
+    /**
+     * The events to show, produced on the background thread.
+     */
+    interface Source {
+        void forEach(Consumer<? super Event> action);
+    }
+
+    private static final int CHUNK_EVENTS = 500;
+
+    private final Component parent;
+    private final EventListModel target;
+    private final Source source;
+    private final Consumer<Event> whenDone;
+
+    /**
+     * Constructs a worker appending every event from a source to a list model.
+     *
+     * @param parent   the component to show errors over
+     * @param target   the list model to append to
+     * @param source   the events to show
+     * @param whenDone called on the event dispatch thread once every chunk has been appended,
+     *                 with the last event shown or null if there was none; not called if the
+     *                 worker is cancelled or fails
+     */
+    EventListWorker(Component parent, EventListModel target, Source source, Consumer<Event> whenDone) {
+        this.parent = parent;
+        this.target = target;
+        this.source = source;
+        this.whenDone = whenDone;
+    }
+
+    @Override
+    protected Event doInBackground() {
+        List<List<Event>> chunk = new ArrayList<>(1);
+        chunk.add(new ArrayList<>(CHUNK_EVENTS));
+        Event[] last = new Event[1];
+        source.forEach(event -> {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            chunk.get(0).add(event);
+            last[0] = event;
+            if (chunk.get(0).size() == CHUNK_EVENTS) {
+                append(chunk.set(0, new ArrayList<>(CHUNK_EVENTS)));
+            }
+        });
+        if (!chunk.get(0).isEmpty()) {
+            append(chunk.get(0));
+        }
+        return last[0];
+    }
+
+    // Posted in order ahead of done(), unlike publish(), so chunks never arrive after it
+    private void append(List<Event> events) {
+        SwingUtilities.invokeLater(() -> {
+            if (!isCancelled()) {
+                target.append(events);
+            }
+        });
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            whenDone.accept(get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            JOptionPane.showMessageDialog(parent, "Could not load events: " + e.getCause().getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
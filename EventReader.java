@@ -0,0 +1,24 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of events read one at a time from a file, such as {@link ICalendarReader} or
+ * {@link CsvEventReader}. Readers hold only the event being read, so files of any size can be
+ * read in constant memory.
+ */
+public interface EventReader extends Closeable {
+    /**
+     * Reads the next event.
+     *
+     * @return the next event, or null at the end of the file
+     * @throws IOException if the file cannot be read or is malformed beyond recovery
+     */
+    Event next() throws IOException;
+
+    /**
+     * Returns the number of entries read so far that were skipped because they could not be read.
+     *
+     * @return the number of skipped entries
+     */
+    int getSkippedCount();
+}
@@ -0,0 +1,108 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Aggregate figures for the events starting within a date range: how many there are, how
+ * much time they book, how they split across priorities and which hours of the week they
+ * occupy. Instances are immutable snapshots returned by {@link Calendar#getStatistics(LocalDate, LocalDate)}.
+ */
+public final class EventStatistics {
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final long[] sums;
+
+    EventStatistics(LocalDate startDate, LocalDate endDate, long[] sums) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.sums = sums;
+    }
+
+    /**
+     * Returns the first day of the range.
+     *
+     * @return the start date
+     */
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Returns the last day of the range.
+     *
+     * @return the end date
+     */
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    /**
+     * Returns the number of events starting in the range.
+     *
+     * @return the event count
+     */
+    public long getEventCount() {
+        return sums[StatisticsIndex.COUNT];
+    }
+
+    /**
+     * Returns the total duration of the events starting in the range.
+     *
+     * @return the booked time in milliseconds
+     */
+    public long getBookedMillis() {
+        return sums[StatisticsIndex.BOOKED];
+    }
+
+    /**
+     * Returns the total duration of the events starting in the range, in hours.
+     *
+     * @return the booked time in hours
+     */
+    public double getBookedHours() {
+        return sums[StatisticsIndex.BOOKED] / 3_600_000.0;
+    }
+
+    /**
+     * Returns the number of events in the range with the given priority.
+     *
+     * @param priority the priority to count, or null for events whose priority is not one of the known levels
+     * @return the event count for that priority
+     */
+    public long getCount(Priority priority) {
+        int offset = priority == null ? Priority.values().length : priority.ordinal();
+        return sums[StatisticsIndex.PRIORITY + offset];
+    }
+
+    /**
+     * Returns how much time the events in the range book within one hour of the week,
+     * summed over every week they cover.
+     *
+     * @param day  the day of the week
+     * @param hour the hour of the day, from 0 to 23
+     * @return the booked time in milliseconds
+     */
+    public long getBookedMillis(DayOfWeek day, int hour) {
+        if (hour < 0 || hour > 23) {
+            throw new IllegalArgumentException("Hour must be between 0 and 23: " + hour);
+        }
+        return sums[StatisticsIndex.HEATMAP + (day.getValue() - 1) * 24 + hour];
+    }
+
+    /**
+     * Returns the hour of the week that the events in the range book the most, as the number
+     * of hours since Monday 00:00.
+     *
+     * @return the busiest hour of the week, or -1 if the range books no time
+     */
+    public int getBusiestHourOfWeek() {
+        int busiest = -1;
+        long most = 0;
+        for (int hour = 0; hour < StatisticsIndex.HOURS_PER_WEEK; hour++) {
+            if (sums[StatisticsIndex.HEATMAP + hour] > most) {
+                most = sums[StatisticsIndex.HEATMAP + hour];
+                busiest = hour;
+            }
+        }
+        return busiest;
+    }
+}
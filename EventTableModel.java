@@ -0,0 +1,331 @@
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A table model that reads its rows on demand from an indexed source of events, such as the
+ * calendar's start-time order or a sorted list, instead of copying every event into the model.
+ * Cells are only formatted when the table asks for them, which it does for visible rows only,
+ * so the cost of a change or a repaint does not grow with the number of events.
+ * <p>
+ * Changes reported by a {@link CalendarListener} are passed to {@link #applyChanges(List)},
+ * which turns them into row insert, delete and update events so the table only touches the
+ * affected rows.
+ * </p>
+ */
+class EventTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The columns a table of events can show.
+     */
+    enum Column {
+        TITLE("Title"),
+        DESCRIPTION("Description"),
+        START_TIME("Start Time"),
+        END_TIME("End Time"),
+        LOCATION("Location"),
+        PRIORITY("Priority");
+
+        private final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Random access to the events shown as rows.
+     */
+    interface Rows {
+        int size();
+
+        Event get(int row);
+    }
+
+    /** Above this many row events a batch is reported as a single data change. */
+    private static final int MAX_ROW_EVENTS = 100;
+
+    private final Column[] columns;
+    private Rows rows;
+    private List<Event> sorted;
+    private Comparator<Event> order;
+    private List<CalendarChange> changesWhileLoading;
+    private int cachedRow = -1;
+    private Event cachedEvent;
+
+    /**
+     * Constructs a model showing the given columns of the given rows.
+     *
+     * @param rows    the events to show
+     * @param columns the columns to show, in order
+     */
+    EventTableModel(Rows rows, Column... columns) {
+        this.rows = rows;
+        this.columns = columns.clone();
+    }
+
+    /**
+     * Constructs an empty model showing the given columns, to be filled by
+     * {@link #setEvents(List, Comparator)}. Changes are ignored until then.
+     *
+     * @param columns the columns to show, in order
+     */
+    EventTableModel(Column... columns) {
+        this.columns = columns.clone();
+        this.sorted = new ArrayList<>();
+        this.rows = listRows(sorted);
+    }
+
+    private static Rows listRows(List<Event> events) {
+        return new Rows() {
+            @Override
+            public int size() {
+                return events.size();
+            }
+
+            @Override
+            public Event get(int row) {
+                return events.get(row);
+            }
+        };
+    }
+
+    /**
+     * Replaces the rows with a sorted list of events and redraws the whole table. Later changes
+     * are applied to the list in the same order.
+     *
+     * @param events the events to show, already sorted
+     * @param order  the order of the events
+     */
+    void setEvents(List<Event> events, Comparator<Event> order) {
+        this.sorted = new ArrayList<>(events);
+        this.order = order;
+        rows = listRows(sorted);
+        // Some of these may already be reflected in the new list; applying them again is harmless
+        if (changesWhileLoading != null) {
+            RowEvents silent = new RowEvents(false);
+            for (CalendarChange change : changesWhileLoading) {
+                applySorted(change, silent);
+            }
+            changesWhileLoading = null;
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Marks the start of loading a new sorted list on another thread. Changes arriving until
+     * {@link #setEvents(List, Comparator)} is called are held back and applied to the new list,
+     * since it is not known which of them the list was taken after.
+     */
+    void startLoading() {
+        changesWhileLoading = new ArrayList<>();
+    }
+
+    /**
+     * Updates the table for a batch of calendar changes. Rows read straight from the calendar
+     * are already current, so only the table is told which rows moved; a sorted list of events
+     * is edited in place first. Runs of adjacent changes are reported as one row range.
+     *
+     * @param changes the changes in the order they were made
+     */
+    void applyChanges(List<CalendarChange> changes) {
+        if (changesWhileLoading != null) {
+            changesWhileLoading.addAll(changes);
+            return;
+        }
+        if (sorted != null && order == null) {
+            return; // Not filled yet
+        }
+        RowEvents events = new RowEvents(changes.size() <= MAX_ROW_EVENTS);
+        for (CalendarChange change : changes) {
+            if (sorted == null) {
+                applyByIndex(change, events);
+            } else {
+                applySorted(change, events);
+            }
+        }
+        events.flush();
+        if (!events.enabled) {
+            fireTableDataChanged();
+        }
+    }
+
+    private void applyByIndex(CalendarChange change, RowEvents events) {
+        switch (change.getType()) {
+            case ADDED:
+                events.inserted(change.getIndex());
+                break;
+            case UPDATED:
+                events.moved(change.getPreviousIndex(), change.getIndex());
+                break;
+            default:
+                events.deleted(change.getIndex());
+        }
+    }
+
+    /**
+     * Applies a change to the sorted list, skipping whatever part of it the list already reflects.
+     */
+    private void applySorted(CalendarChange change, RowEvents events) {
+        if (change.getType() == CalendarChange.Type.UPDATED) {
+            int from = Collections.binarySearch(sorted, change.getPreviousEvent(), order);
+            if (from >= 0) {
+                sorted.remove(from);
+            }
+            int to = insertSorted(change.getEvent());
+            if (from >= 0 && to >= 0) {
+                events.moved(from, to);
+            } else if (from >= 0) {
+                events.deleted(from);
+            } else if (to >= 0) {
+                events.inserted(to);
+            }
+        } else if (change.getType() == CalendarChange.Type.ADDED) {
+            int row = insertSorted(change.getEvent());
+            if (row >= 0) {
+                events.inserted(row);
+            }
+        } else {
+            int row = Collections.binarySearch(sorted, change.getEvent(), order);
+            if (row >= 0) {
+                sorted.remove(row);
+                events.deleted(row);
+            }
+        }
+    }
+
+    /**
+     * Inserts an event at its place in the sorted list.
+     *
+     * @return the row of the event, or -1 if it was already in the list
+     */
+    private int insertSorted(Event event) {
+        int row = Collections.binarySearch(sorted, event, order);
+        if (row >= 0) {
+            return -1;
+        }
+        sorted.add(-row - 1, event);
+        return -row - 1;
+    }
+
+    /**
+     * Collects row events, merging runs of inserts at consecutive rows and deletes at the
+     * same row, and stops firing them once a batch is too large to report row by row.
+     */
+    private class RowEvents {
+        private final boolean enabled;
+        private boolean inserting;
+        private int first = -1;
+        private int last;
+
+        RowEvents(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        void inserted(int row) {
+            if (first >= 0 && inserting && row == last + 1) {
+                last = row;
+                return;
+            }
+            flush();
+            inserting = true;
+            first = row;
+            last = row;
+        }
+
+        void deleted(int row) {
+            if (first >= 0 && !inserting && row == first) {
+                last++;
+                return;
+            }
+            flush();
+            inserting = false;
+            first = row;
+            last = row;
+        }
+
+        void moved(int from, int to) {
+            flush();
+            if (!enabled) {
+                return;
+            }
+            if (from == to) {
+                fireTableRowsUpdated(to, to);
+            } else {
+                fireTableRowsDeleted(from, from);
+                fireTableRowsInserted(to, to);
+            }
+        }
+
+        void flush() {
+            if (first >= 0 && enabled) {
+                if (inserting) {
+                    fireTableRowsInserted(first, last);
+                } else {
+                    fireTableRowsDeleted(first, last);
+                }
+            }
+            first = -1;
+        }
+    }
+
+    /**
+     * Returns the event shown in a row.
+     *
+     * @param row the row index in the model
+     * @return the event in that row
+     */
+    Event getEventAt(int row) {
+        // A table asks for every cell of a row in turn, so remember the last lookup
+        if (row != cachedRow) {
+            cachedEvent = rows.get(row);
+            cachedRow = row;
+        }
+        return cachedEvent;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column].name;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Event event = getEventAt(row);
+        switch (columns[column]) {
+            case TITLE:
+                return event.getTitle();
+            case DESCRIPTION:
+                return event.getDescription();
+            case START_TIME:
+                return EventFormat.table(event.getStartMillis());
+            case END_TIME:
+                return EventFormat.table(event.getEndMillis());
+            case LOCATION:
+                return event.getLocation();
+            default:
+                return event.getPriority();
+        }
+    }
+
+    @Override
+    public void fireTableChanged(TableModelEvent e) {
+        cachedRow = -1;
+        cachedEvent = null;
+        super.fireTableChanged(e);
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Controls when the write-ahead log of a {@link CalendarStore} is forced to disk,
+ * trading durability against write latency.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every change is on disk before anyone but its writer sees it, so nothing a crash could
+     * lose is ever seen. The events added by one batch, or archived by one refresh, share a
+     * single force, and so do the changes of writers that arrive while a force is in progress.
+     * Reads of the current {@link CalendarVersion}, which take no lock, are not held up by it.
+     */
+    ALWAYS,
+
+    /**
+     * Writes return immediately and a background flusher forces the log at a fixed
+     * interval, so at most one interval of writes can be lost on a crash.
+     */
+    INTERVAL,
+
+    /**
+     * The log is only forced when it is rotated or closed; the operating system decides
+     * when everything else reaches the disk.
+     */
+    NEVER
+}
@@ -1,13 +1,32 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.*;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.UUID;
 
 // /**
@@ -16,14 +35,42 @@ import java.util.UUID;
 //  * of calendar events.
 //  */
 public class GUI extends JFrame {
+    private static final long serialVersionUID = 1L;
+
+    private static final int SUMMARY_PAGE_SIZE = 200;
+    private static final int SEARCH_DEBOUNCE_MILLIS = 30;
+    private static final int IMPORT_BATCH_SIZE = 10_000;
     private Calendar calendarManager;  
     private JTable eventTable;                
-    private DefaultTableModel tableModel;     
+    private EventTableModel tableModel;
+    /** The version the dashboard shows, advanced only as the changes leading to it are applied. */
+    private CalendarVersion shownVersion;
+    private JMenuItem undoItem, redoItem;
+    private WatchFolderIngester ingester;
+    private EventTableModel sortTableModel;
     private JTextField titleField, locationField, descriptionField;  
     private JSpinner dateSpinner, startTimeSpinner, endTimeSpinner;   
     private JComboBox<String> priorityCombo;  
-    private JTextArea historyTextArea;
-    private JTextArea summaryTextArea;
+    private EventListModel historyListModel;
+    /** Events archived while the history was loading, added once it has loaded unless the load included them. */
+    private final List<Event> archivedWhileLoading = new ArrayList<>();
+    private boolean historyLoaded;
+    private EventListModel summaryListModel;
+    private JTextArea statisticsTextArea;
+    private JPanel summaryCards;
+    private volatile Iterator<Event> summaryEvents = Collections.emptyIterator();
+    private volatile boolean summaryHasMore;
+    private BoundedRangeModel summaryScroll;
+    private JProgressBar busyIndicator;
+    private int busyTasks;
+    private SwingWorker<?, ?> searchTask;
+    private EventListModel searchResults;
+    private String searchedAttribute;
+    private String searchedValue;
+    private boolean searchRefinable;
+    private SwingWorker<?, ?> sortTask;
+    private SwingWorker<?, ?> summaryTask;
+    private SwingWorker<?, ?> historyTask;
 
     /**
      * Constructs a CalendarManagerGUI object and initializes the UI components.
@@ -44,12 +91,27 @@ public class GUI extends JFrame {
         UIManager.put("Button.foreground", Color.BLACK); 
         UIManager.put("Button.border", BorderFactory.createLineBorder(Color.BLACK));
 
-        calendarManager = new Calendar();  
+        calendarManager = openCalendar();
+        shownVersion = calendarManager.getVersion();
+        ingester = startIngester();
         setTitle("Calendar Manager");  
         setSize(800, 600);  
         getContentPane().setBackground(new Color(0, 255, 255)); 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);  
         setLocationRelativeTo(null);  
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                try {
+                    if (ingester != null) {
+                        ingester.close();
+                    }
+                    calendarManager.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
 
         // Create tabbed pane for different views
         JTabbedPane tabbedPane = new JTabbedPane();
@@ -90,6 +152,216 @@ public class GUI extends JFrame {
         tabbedPane.setTabComponentAt(5, TabComponent("Generate Summary"));
 
         add(tabbedPane);   
+        setJMenuBar(createMenuBar());
+
+        // Shown while any background task is running
+        busyIndicator = new JProgressBar();
+        busyIndicator.setIndeterminate(true);
+        busyIndicator.setVisible(false);
+        add(busyIndicator, BorderLayout.SOUTH);
+
+        calendarManager.addCalendarListener(new SwingChangeBatcher(this::applyChanges));
+        refreshEventTable();
+    }
+
+    /**
+     * Opens the calendar stored in the user's home directory, falling back to an
+     * in-memory calendar if the store cannot be read.
+     *
+     * @return the calendar to manage
+     */
+    private Calendar openCalendar() {
+        try {
+            return Calendar.open(new CalendarStore(Paths.get(System.getProperty("user.home"), ".calendar-manager")));
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(null, "Could not load saved events: " + ex.getMessage()
+                    + "\nChanges made in this session will not be saved.", "Storage Error", JOptionPane.ERROR_MESSAGE);
+            return new Calendar();
+        }
+    }
+
+    /**
+     * Starts adding the files dropped into the directory named by the {@code calendar.inbox}
+     * system property, if set.
+     *
+     * @return the running ingester, or null if there is no inbox or it cannot be watched
+     */
+    private WatchFolderIngester startIngester() {
+        String inbox = System.getProperty("calendar.inbox");
+        if (inbox == null || inbox.isEmpty()) {
+            return null;
+        }
+        try {
+            return new WatchFolderIngester(calendarManager, Paths.get(inbox));
+        } catch (IOException | RuntimeException ex) {
+            JOptionPane.showMessageDialog(null, "Could not watch " + inbox + ": " + ex.getMessage(),
+                    "Watch Folder Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the menu bar with the File menu for importing and exporting iCalendar files and
+     * the Edit menu for undoing and redoing changes to events.
+     *
+     * @return the menu bar
+     */
+    private JMenuBar createMenuBar() {
+        JMenu fileMenu = new JMenu("File");
+        JMenuItem importItem = new JMenuItem("Import iCalendar...");
+        importItem.addActionListener(e -> importICalendar());
+        JMenuItem exportItem = new JMenuItem("Export iCalendar...");
+        exportItem.addActionListener(e -> exportICalendar());
+        fileMenu.add(importItem);
+        fileMenu.add(exportItem);
+        if (ingester != null) {
+            JMenuItem watchItem = new JMenuItem("Watch Folder Status...");
+            watchItem.addActionListener(e -> JOptionPane.showMessageDialog(this,
+                    "Watching " + ingester.getDirectory() + "\n\n" + ingester.getMetrics(),
+                    "Watch Folder", JOptionPane.INFORMATION_MESSAGE));
+            fileMenu.addSeparator();
+            fileMenu.add(watchItem);
+        }
+
+        JMenu editMenu = new JMenu("Edit");
+        undoItem = new JMenuItem("Undo");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        undoItem.addActionListener(e -> undoOrRedo(true));
+        redoItem = new JMenuItem("Redo");
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        redoItem.addActionListener(e -> undoOrRedo(false));
+        editMenu.add(undoItem);
+        editMenu.add(redoItem);
+        updateEditMenu();
+
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(fileMenu);
+        menuBar.add(editMenu);
+        return menuBar;
+    }
+
+    /**
+     * Undoes or redoes the last change to an event; the views follow through {@link #applyChanges(List)}.
+     *
+     * @param undo true to undo, false to redo
+     */
+    private void undoOrRedo(boolean undo) {
+        boolean done = undo ? calendarManager.undo() : calendarManager.redo();
+        if (!done) {
+            JOptionPane.showMessageDialog(this, "The event has changed since, or its time is now taken, so the change was skipped.",
+                    undo ? "Cannot Undo" : "Cannot Redo", JOptionPane.WARNING_MESSAGE);
+        }
+        updateEditMenu();
+    }
+
+    private void updateEditMenu() {
+        undoItem.setEnabled(calendarManager.canUndo());
+        redoItem.setEnabled(calendarManager.canRedo());
+    }
+
+    /**
+     * Asks for an iCalendar file and adds its events in the background, in batches of
+     * {@value #IMPORT_BATCH_SIZE}, skipping those that clash with events already in the calendar.
+     */
+    private void importICalendar() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("iCalendar files", "ics"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = chooser.getSelectedFile().toPath();
+        runInBackground(null, new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() throws IOException {
+                int read = 0;
+                int added = 0;
+                try (ICalendarReader reader = ICalendarReader.open(path)) {
+                    List<Event> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                    Event event;
+                    while ((event = reader.next()) != null || !batch.isEmpty()) {
+                        if (event != null) {
+                            batch.add(event);
+                            read++;
+                            if (batch.size() < IMPORT_BATCH_SIZE) {
+                                continue;
+                            }
+                        }
+                        added += calendarManager.addEvents(batch, ImportPolicy.SKIP_CONFLICTS).getAddedCount();
+                        batch.clear();
+                    }
+                    return String.format("Imported %d of %d events.%nSkipped %d that clash with existing events or with each other.%n"
+                            + "Skipped %d that could not be read.", added, read, read - added, reader.getSkippedCount());
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(GUI.this, get(), "Import", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(GUI.this, "Could not import " + path.getFileName() + ": " + ex.getCause().getMessage(),
+                            "Import Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+    }
+
+    /**
+     * Asks for a file and writes every event to it in iCalendar format in the background: the
+     * past events first, then the active ones as they stand when the export starts. An event
+     * archived while the past events are being written is written once, as it stood then.
+     */
+    private void exportICalendar() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("iCalendar files", "ics"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        Path path = file.getName().contains(".") ? file.toPath() : file.toPath().resolveSibling(file.getName() + ".ics");
+        runInBackground(null, new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                // Captured before the history is read, so an event archived meanwhile is in one or the other
+                CalendarVersion active = calendarManager.getVersion();
+                try (ICalendarWriter writer = ICalendarWriter.open(path)) {
+                    try {
+                        calendarManager.forEachHistoryEvent(event -> {
+                            Event same = active.getEventById(event.getId());
+                            if (same != null && same.getStartMillis() == event.getStartMillis()) {
+                                return; // Archived since the capture; written with the active events
+                            }
+                            try {
+                                writer.write(event);
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException(ex);
+                            }
+                        });
+                    } catch (UncheckedIOException ex) {
+                        throw ex.getCause();
+                    }
+                    for (Event event : active.getEvents()) {
+                        writer.write(event);
+                    }
+                    return writer.getWrittenCount();
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(GUI.this, "Exported " + get() + " events to " + path.getFileName() + ".",
+                            "Export", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(GUI.this, "Could not export to " + path.getFileName() + ": " + ex.getCause().getMessage(),
+                            "Export Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
     }
 
    /**
@@ -119,9 +391,19 @@ public class GUI extends JFrame {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(new EmptyBorder(10, 10, 10, 10)); 
 
-        // Define table columns
-        String[] columns = {"Title", "Description","Start Time", "End Time", "Location", "Priority"};
-        tableModel = new DefaultTableModel(columns, 0);  
+        // Rows are read from the shown version's start-time index as they scroll into view
+        tableModel = new EventTableModel(new EventTableModel.Rows() {
+            @Override
+            public int size() {
+                return shownVersion.getEventCount();
+            }
+
+            @Override
+            public Event get(int row) {
+                return shownVersion.getEventAt(row);
+            }
+        }, EventTableModel.Column.TITLE, EventTableModel.Column.DESCRIPTION, EventTableModel.Column.START_TIME,
+                EventTableModel.Column.END_TIME, EventTableModel.Column.LOCATION, EventTableModel.Column.PRIORITY);
         eventTable = new JTable(tableModel); 
         JScrollPane scrollPane = new JScrollPane(eventTable);  
         panel.add(scrollPane, BorderLayout.CENTER);  
@@ -263,21 +545,40 @@ public class GUI extends JFrame {
 
         panel.add(searchOptionsPanel, BorderLayout.NORTH);  
     
-        JTextArea resultArea = new JTextArea(10, 40);
-        resultArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(resultArea);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        searchResults = new EventListModel();
+        panel.add(createEventListView(searchResults), BorderLayout.CENTER);
 
-        
-        searchButton.addActionListener(e -> {
+        // Search as the user types, once the input has paused for a moment
+        Timer debounce = new Timer(SEARCH_DEBOUNCE_MILLIS, e -> {
             String attribute = (String) searchAttributeCombo.getSelectedItem();
             String value = searchValueField.getText();
-            List<Event> events = calendarManager.viewEvents(attribute, value);
-            resultArea.setText("");  
-            for (Event event : events) {
-                resultArea.append(event.toString() + "\n\n");  
+            if (!"Date".equals(attribute) || value.length() == "MM/dd/yyyy".length()) {
+                search(attribute, value, true);
             }
         });
+        debounce.setRepeats(false);
+        searchValueField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        searchAttributeCombo.addActionListener(e -> debounce.restart());
+
+        searchButton.addActionListener(e -> {
+            debounce.stop();
+            search((String) searchAttributeCombo.getSelectedItem(), searchValueField.getText(), false);
+        });
        
 
         return panel;
@@ -310,8 +611,8 @@ public class GUI extends JFrame {
         panel.add(controlsPanel, BorderLayout.NORTH);
         
        
-        String[] columns = {"Title", "Start Time", "End Time", "Location", "Priority"};
-        DefaultTableModel sortTableModel = new DefaultTableModel(columns, 0);
+        sortTableModel = new EventTableModel(EventTableModel.Column.TITLE, EventTableModel.Column.START_TIME, EventTableModel.Column.END_TIME,
+                EventTableModel.Column.LOCATION, EventTableModel.Column.PRIORITY);
         JTable sortEventTable = new JTable(sortTableModel);
         JScrollPane scrollPane = new JScrollPane(sortEventTable);
         panel.add(scrollPane, BorderLayout.CENTER);
@@ -319,19 +620,24 @@ public class GUI extends JFrame {
        
         sortButton.addActionListener(e -> {
             String criteria = (String) sortCriteriaCombo.getSelectedItem();
-            List<Event> sortedEvents = calendarManager.sortEvents(criteria);
-            
-            sortTableModel.setRowCount(0); 
-            for (Event event : sortedEvents) {
-                Object[] row = {
-                    event.getTitle(),
-                    event.getStartTime().format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm")),
-                    event.getEndTime().format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm")),
-                    event.getLocation(),
-                    event.getPriority()
-                };
-                sortTableModel.addRow(row);
-            }
+            sortTableModel.startLoading();
+            sortTask = runInBackground(sortTask, new SwingWorker<List<Event>, Void>() {
+                @Override
+                protected List<Event> doInBackground() {
+                    return calendarManager.sortEvents(criteria);
+                }
+
+                @Override
+                protected void done() {
+                    if (!isCancelled()) {
+                        try {
+                            sortTableModel.setEvents(get(), Calendar.sortOrder(criteria));
+                        } catch (InterruptedException | ExecutionException ex) {
+                            ex.printStackTrace();
+                        }
+                    }
+                }
+            });
         });
 
         return panel;
@@ -359,14 +665,35 @@ public class GUI extends JFrame {
         inputPanel.add(endDateField);
         inputPanel.add(generateButton);
 
-        summaryTextArea = new JTextArea(20, 40);
-        summaryTextArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(summaryTextArea);
+        JComboBox<String> periodCombo = new JComboBox<>(new String[]{"Day", "Week", "Month"});
+        periodCombo.setSelectedItem("Month");
+        JButton statisticsButton = new JButton("Statistics");
+        statisticsButton.setForeground(Color.BLACK);
+        statisticsButton.setFont(statisticsButton.getFont().deriveFont(Font.BOLD));
+        inputPanel.add(new JLabel("Per:"));
+        inputPanel.add(periodCombo);
+        inputPanel.add(statisticsButton);
+
+        summaryListModel = new EventListModel();
+        JSplitPane eventView = createEventListView(summaryListModel);
+        statisticsTextArea = new JTextArea(20, 40);
+        statisticsTextArea.setEditable(false);
+        statisticsTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13)); // keeps the heatmap columns aligned
+
+        // Load the next page once the list is scrolled near the end of what has been loaded
+        summaryScroll = ((JScrollPane) eventView.getTopComponent()).getVerticalScrollBar().getModel();
+        summaryScroll.addChangeListener(e -> SwingUtilities.invokeLater(this::loadMoreSummaryIfNeeded));
+
+        summaryCards = new JPanel(new CardLayout());
+        summaryCards.add(eventView, "events");
+        summaryCards.add(new JScrollPane(statisticsTextArea), "statistics");
 
         panel.add(inputPanel, BorderLayout.NORTH);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(summaryCards, BorderLayout.CENTER);
 
         generateButton.addActionListener(e -> generateSummary(startDateField.getText(), endDateField.getText()));
+        statisticsButton.addActionListener(e -> showStatistics(startDateField.getText(), endDateField.getText(),
+                (String) periodCombo.getSelectedItem()));
 
         return panel;
     }
@@ -376,14 +703,12 @@ public class GUI extends JFrame {
     /**
  * Creates the panel for for storing past events moved from the dashboard.
  *
- * @return a JPanel with input fields for date range and a text area to display the history
+ * @return a JPanel with a list of past events
  */
     private JPanel createHistoryPanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        historyTextArea = new JTextArea(20, 40);
-        historyTextArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(historyTextArea);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        historyListModel = new EventListModel();
+        panel.add(createEventListView(historyListModel), BorderLayout.CENTER);
 
         JButton refreshButton = new JButton("Refresh History");
         refreshButton.addActionListener(e -> refreshHistory());
@@ -434,7 +759,7 @@ public class GUI extends JFrame {
             refreshEventTable();
         } else {
             JOptionPane.showMessageDialog(this, 
-                "The selected date and time (" + startDateTime.format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm")) + 
+                "The selected date and time (" + startDateTime.format(EventFormat.TABLE) + 
                 ") is already used by another event. Please choose a different time.",
                 "Time Slot Occupied", 
                 JOptionPane.WARNING_MESSAGE);
@@ -451,22 +776,18 @@ public class GUI extends JFrame {
 
 /**
 * Removes the selected event from the event table.
- @throws DateTimeParseException if the start time of the event cannot be parsed
 **/
 private void removeSelectedEvent() {
        
     int selectedRow = eventTable.getSelectedRow();
     System.out.println("Selected Row Index: " + selectedRow);
     if (selectedRow >= 0) {
-        String startTimeStr = (String) tableModel.getValueAt(selectedRow, 2); 
-        
-        try {
-            LocalDateTime startTime = LocalDateTime.parse(startTimeStr, DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm"));
-            calendarManager.removeEvent(startTime.toString());
+        Event event = tableModel.getEventAt(eventTable.convertRowIndexToModel(selectedRow));
+        if (calendarManager.removeEventById(event.getId())) {
             refreshEventTable();
             JOptionPane.showMessageDialog(this, "Event removed successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
-        } catch (DateTimeParseException ex) {
-            JOptionPane.showMessageDialog(this, "Error parsing event date: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(this, "Event not found.", "Error", JOptionPane.ERROR_MESSAGE);
         }
     } else {
         JOptionPane.showMessageDialog(this, "Please select an event to remove.", "No Selection", JOptionPane.WARNING_MESSAGE);
@@ -475,18 +796,13 @@ private void removeSelectedEvent() {
 
 /**
 * Updates the selected event from the event table.
- @throws DateTimeParseException if the start time of the event cannot be parsed
 **/
 private void updateSelectedEvent() {
     int selectedRow = eventTable.getSelectedRow();
     if (selectedRow >= 0) {
-        String startTimeStr = (String) tableModel.getValueAt(selectedRow, 1); 
-        
-        try {
-            LocalDateTime startTime = LocalDateTime.parse(startTimeStr, DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm"));
-            Event event = calendarManager.searchEventByDatetime(startTime);
-            
-            if (event != null) {
+        Event event = tableModel.getEventAt(eventTable.convertRowIndexToModel(selectedRow));
+
+        if (event != null) {
             JDialog updateDialog = new JDialog(this, "Update Event", true);
             updateDialog.setLayout(new GridBagLayout());
             GridBagConstraints gbc = new GridBagConstraints();
@@ -571,8 +887,11 @@ private void updateSelectedEvent() {
                     String newPriority = (String) updatePriorityCombo.getSelectedItem();
 
                     Event updatedEvent = new Event(newTitle, newStartDateTime, newEndDateTime, newLocation, event.getId(), newDescription, newPriority);
-                    calendarManager.removeEvent(startTime.toString());
-                    calendarManager.addEvent(updatedEvent);
+                    if (!calendarManager.updateEventById(event.getId(), updatedEvent)) {
+                        JOptionPane.showMessageDialog(this, "The new time overlaps another event. Please choose a different time.",
+                                "Time Slot Occupied", JOptionPane.WARNING_MESSAGE);
+                        return;
+                    }
 
                     updateDialog.dispose();
                     refreshEventTable();
@@ -588,33 +907,48 @@ private void updateSelectedEvent() {
         }else {
             JOptionPane.showMessageDialog(this, "Event not found.", "Error", JOptionPane.ERROR_MESSAGE);
         }
-    } catch (DateTimeParseException ex) {
-        JOptionPane.showMessageDialog(this, "Error parsing event date: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-    }
 } else {
     JOptionPane.showMessageDialog(this, "Please select an event to update.", "No Selection", JOptionPane.WARNING_MESSAGE);
 }
 }
 
- // Refresh the event table
+ // Refresh the event table; the archived rows are removed through applyChanges
  private void refreshEventTable() {
-    SwingUtilities.invokeLater(() -> {
-        calendarManager.refreshEvents();
-        tableModel.setRowCount(0);
-        List<Event> events = calendarManager.sortEvents("date");
-        
-        for (Event event : events) {
-            Object[] row = {
-                event.getTitle(),
-                event.getDescription(),
-                event.getStartTime().format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm")),
-                event.getEndTime().format(DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm")),
-                event.getLocation(),
-                event.getPriority()
-            };
-            tableModel.addRow(row);
+    runInBackground(calendarManager::refreshEvents);
+}
+
+/**
+ * Applies a batch of calendar changes to every view: the dashboard and sort tables update
+ * only the affected rows, and newly archived events are inserted into the history.
+ *
+ * @param changes the changes in the order they were made
+ */
+private void applyChanges(List<CalendarChange> changes) {
+    searchRefinable = false; // New or updated events may now match
+    CalendarVersion reached = calendarManager.getVersion(changes.get(changes.size() - 1).getVersion());
+    if (reached != null) {
+        shownVersion = reached;
+        tableModel.applyChanges(changes);
+    } else {
+        // Too far behind to step through the changes, so jump to the newest version
+        shownVersion = calendarManager.getVersion();
+        tableModel.fireTableDataChanged();
+    }
+    sortTableModel.applyChanges(changes);
+    // A started load counts as loading until its last chunk is shown, even once its worker is done
+    if (historyLoaded || historyTask != null) {
+        List<Event> archived = historyLoaded ? new ArrayList<>() : archivedWhileLoading;
+        for (CalendarChange change : changes) {
+            if (change.getType() == CalendarChange.Type.ARCHIVED) {
+                archived.add(change.getEvent());
+            }
+        }
+        if (historyLoaded) {
+            // The history is in start-time order and may already hold events archived while it loaded
+            historyListModel.insertSorted(archived, Calendar.sortOrder("date"));
         }
-    });
+    }
+    updateEditMenu();
 }
 
 /**
@@ -638,18 +972,26 @@ private void clearAddEventFields() {
 /**
  * Refreshes the history view with past events.
  * <p>
- * This method retrieves historical events from the {@link Calendar}, 
- * clears the current text area, and appends each event to the history text area. 
- * It also refreshes the event table to ensure consistency between the event history and the current event list.
+ * The first refresh loads the whole history from the {@link Calendar} in the background,
+ * showing it as it is read. After that, moving ended events into the history is enough:
+ * they reach the list through {@link #applyChanges(List)}, as do events archived by
+ * any other refresh. Events archived during the load are held back until it finishes and
+ * then inserted in order, skipping those the load already showed.
  * </p>
  */
 private void refreshHistory() {
-    calendarManager.refreshEvents();
-    historyTextArea.setText("");
-    for (Event event : calendarManager.getHistoryEvents()) {
-        historyTextArea.append(event.toString() + "\n\n");
+    if (historyLoaded) {
+        runInBackground(calendarManager::refreshEvents);
+    } else if (historyTask == null || historyTask.isDone()) { // not started, or failed
+        historyListModel.clear();
+        archivedWhileLoading.clear();
+        historyTask = runInBackground(null, new EventListWorker(this, historyListModel, calendarManager::forEachHistoryEvent, last -> {
+            historyLoaded = true;
+            historyListModel.insertSorted(archivedWhileLoading, Calendar.sortOrder("date"));
+            archivedWhileLoading.clear();
+            runInBackground(calendarManager::refreshEvents);
+        }));
     }
-    refreshEventTable(); 
 }
 
 /**
@@ -661,17 +1003,247 @@ private void refreshHistory() {
  */
     private void generateSummary(String startDateStr, String endDateStr) {
         try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-            LocalDate startDate = LocalDate.parse(startDateStr, formatter);
-            LocalDate endDate = LocalDate.parse(endDateStr, formatter);
+            LocalDate startDate = LocalDate.parse(startDateStr, EventFormat.DATE);
+            LocalDate endDate = LocalDate.parse(endDateStr, EventFormat.DATE);
 
-            String summary = calendarManager.generateSummary(startDate, endDate);
-            summaryTextArea.setText(summary);
+            if (summaryTask != null) {
+                summaryTask.cancel(true);
+            }
+            summaryEvents = calendarManager.eventsInRange(startDate, endDate);
+            summaryHasMore = true;
+            summaryListModel.clear();
+            ((CardLayout) summaryCards.getLayout()).show(summaryCards, "events");
+            loadSummaryPage();
         } catch (DateTimeParseException ex) {
             JOptionPane.showMessageDialog(this, "Invalid date format. Please use MM/dd/yyyy.", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+/**
+ * Displays aggregate statistics for the events starting within the specified date range:
+ * totals, the priority breakdown, an hour-of-week heatmap of booked hours and the number
+ * of events per day, week or month.
+ *
+ * @param startDateStr the start date of the range, in the format "MM/dd/yyyy"
+ * @param endDateStr the end date of the range, in the format "MM/dd/yyyy"
+ * @param period "Day", "Week" or "Month"
+ */
+    private void showStatistics(String startDateStr, String endDateStr, String period) {
+        LocalDate startDate;
+        LocalDate endDate;
+        try {
+            startDate = LocalDate.parse(startDateStr, EventFormat.DATE);
+            endDate = LocalDate.parse(endDateStr, EventFormat.DATE);
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid date format. Please use MM/dd/yyyy.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        summaryEvents = Collections.emptyIterator();
+        summaryHasMore = false;
+        summaryTask = runInBackground(summaryTask, new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                return statisticsText(startDate, endDate, period);
+            }
+
+            @Override
+            protected void done() {
+                if (!isCancelled()) {
+                    try {
+                        statisticsTextArea.setText(get());
+                        statisticsTextArea.setCaretPosition(0);
+                        ((CardLayout) summaryCards.getLayout()).show(summaryCards, "statistics");
+                    } catch (InterruptedException | ExecutionException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+/**
+ * Builds the text shown by {@link #showStatistics(String, String, String)}.
+ *
+ * @param startDate the start date of the range
+ * @param endDate the end date of the range
+ * @param period "Day", "Week" or "Month"
+ * @return the statistics as text
+ */
+    private String statisticsText(LocalDate startDate, LocalDate endDate, String period) {
+        EventStatistics statistics = calendarManager.getStatistics(startDate, endDate);
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Events: %d%nBooked hours: %.1f%n", statistics.getEventCount(), statistics.getBookedHours()));
+        for (Priority priority : Priority.values()) {
+            text.append(String.format("%s priority: %d%n", priority.getLabel(), statistics.getCount(priority)));
+        }
+        if (statistics.getCount(null) > 0) {
+            text.append(String.format("Other priority: %d%n", statistics.getCount(null)));
+        }
+        int busiest = statistics.getBusiestHourOfWeek();
+        if (busiest >= 0) {
+            text.append(String.format("Busiest hour: %s %02d:00%n",
+                    DayOfWeek.of(busiest / 24 + 1).getDisplayName(TextStyle.FULL, Locale.getDefault()), busiest % 24));
+        }
+
+        text.append("\nBooked hours by hour of week\n     ");
+        for (int hour = 0; hour < 24; hour++) {
+            text.append(String.format("%5d", hour));
+        }
+        for (DayOfWeek day : DayOfWeek.values()) {
+            text.append(String.format("%n%-5s", day.getDisplayName(TextStyle.SHORT, Locale.getDefault())));
+            for (int hour = 0; hour < 24; hour++) {
+                text.append(String.format("%5.1f", statistics.getBookedMillis(day, hour) / 3_600_000.0));
+            }
+        }
+
+        ChronoUnit unit = "Day".equals(period) ? ChronoUnit.DAYS : "Week".equals(period) ? ChronoUnit.WEEKS : ChronoUnit.MONTHS;
+        text.append("\n\nEvents per ").append(period.toLowerCase()).append('\n');
+        for (Map.Entry<LocalDate, Long> count : calendarManager.countEvents(startDate, endDate, unit).entrySet()) {
+            text.append(count.getKey().format(EventFormat.DATE)).append("  ").append(count.getValue()).append('\n');
+        }
+
+        return text.toString();
+    }
+
+/**
+ * Appends the next page of the current summary to the summary list.
+ * <p>
+ * Only the pages the user has scrolled to are ever loaded, so a summary over a long
+ * range shows its first page immediately and does not hold the whole range in memory.
+ * </p>
+ */
+    private void loadSummaryPage() {
+        Iterator<Event> events = summaryEvents;
+        summaryTask = runInBackground(null, new EventListWorker(this, summaryListModel, action -> {
+            for (int i = 0; i < SUMMARY_PAGE_SIZE && events.hasNext(); i++) {
+                action.accept(events.next());
+            }
+            if (events == summaryEvents) {
+                summaryHasMore = events.hasNext();
+            }
+        }, last -> loadMoreSummaryIfNeeded()));
+    }
+
+/**
+ * Loads the next page of the current summary if the view is scrolled near the end of what
+ * has been loaded and no page is being loaded already.
+ */
+    private void loadMoreSummaryIfNeeded() {
+        if (summaryHasMore && (summaryTask == null || summaryTask.isDone())
+                && summaryScroll.getValue() + summaryScroll.getExtent() >= summaryScroll.getMaximum() - summaryScroll.getExtent() / 2) {
+            loadSummaryPage();
+        }
+    }
+
+/**
+ * Creates a list of events with a pane below it showing the full details of the selected event.
+ * Only the visible rows are rendered, so the list stays responsive however many events it holds.
+ * Copying selected rows copies their full details.
+ *
+ * @param model the events to show
+ * @return a split pane with the scrollable list on top and the details below
+ */
+    private JSplitPane createEventListView(EventListModel model) {
+        JList<Event> list = new JList<>(model);
+        list.setCellRenderer(new EventListCellRenderer());
+        list.setPrototypeCellValue(EventListCellRenderer.PROTOTYPE); // spares measuring every row
+        JTextArea details = new JTextArea(7, 40);
+        details.setEditable(false);
+        list.addListSelectionListener(e -> {
+            Event selected = list.getSelectedValue();
+            details.setText(selected == null ? "" : selected.toString());
+            details.setCaretPosition(0);
+        });
+
+        JSplitPane view = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(list), new JScrollPane(details));
+        view.setResizeWeight(0.75);
+        return view;
+    }
+
+/**
+ * Searches the active events in the background and shows the result in the search list,
+ * cancelling any search still running. When the value extends the one searched last for the
+ * same attribute, only the last result is filtered instead of searching every event.
+ *
+ * @param attribute the attribute to search by
+ * @param value the value to look for
+ * @param refine true to allow narrowing the last result, false to always search afresh
+ */
+    private void search(String attribute, String value, boolean refine) {
+        List<Event> previous = refine && searchRefinable && attribute.equals(searchedAttribute)
+                && value.toLowerCase().contains(searchedValue.toLowerCase()) ? searchResults.getEvents() : null;
+        // Any change made while the search runs may be missing from its result
+        CalendarVersion searchedVersion = calendarManager.getVersion();
+        searchTask = runInBackground(searchTask, new SwingWorker<List<Event>, Void>() {
+            @Override
+            protected List<Event> doInBackground() {
+                return previous != null ? calendarManager.refineEvents(previous, attribute, value)
+                        : calendarManager.viewEvents(attribute, value);
+            }
+
+            @Override
+            protected void done() {
+                if (!isCancelled()) {
+                    try {
+                        searchResults.setEvents(get());
+                        searchedAttribute = attribute;
+                        searchedValue = value;
+                        searchRefinable = calendarManager.getVersion() == searchedVersion;
+                    } catch (InterruptedException | ExecutionException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+/**
+ * Runs a task on a background thread and shows the busy indicator until it finishes.
+ *
+ * @param superseded the task this one replaces, which is cancelled if still running; may be null
+ * @param task the task to run
+ * @return the task, to be passed as the superseded task of the next request of the same kind
+ */
+    private SwingWorker<?, ?> runInBackground(SwingWorker<?, ?> superseded, SwingWorker<?, ?> task) {
+        if (superseded != null) {
+            superseded.cancel(true);
+        }
+        busyTasks++;
+        busyIndicator.setVisible(true);
+        task.addPropertyChangeListener(e -> {
+            if ("state".equals(e.getPropertyName()) && e.getNewValue() == SwingWorker.StateValue.DONE && --busyTasks == 0) {
+                busyIndicator.setVisible(false);
+            }
+        });
+        task.execute();
+        return task;
+    }
+
+/**
+ * Runs calendar work that updates the views through {@link #applyChanges(List)} on a background thread.
+ *
+ * @param work the work to run
+ */
+    private void runInBackground(Runnable work) {
+        runInBackground(null, new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                work.run();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             try {
@@ -0,0 +1,492 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The on-disk tier of a calendar's history. Older past events are spilled into immutable
+ * segment files, one or more per calendar month, and read back lazily through memory-mapped
+ * I/O when a history listing or summary reaches their month.
+ * <p>
+ * Within a segment, events are sorted by start time. Start times are delta-encoded and end
+ * times stored as durations, both as variable-length integers. Titles, locations, descriptions
+ * and priorities are replaced by indexes into a per-segment string dictionary. A segment also
+ * stores the {@link StatisticsIndex} totals of its events for each start day, so the statistics
+ * of the whole archive are rebuilt from those when a calendar opens, without reading events.
+ * </p>
+ * <p>
+ * A manifest lists the committed segments. Each spill also records the log generation of the
+ * snapshot that will stop holding the spilled events in memory, and keeps that record until a
+ * snapshot at or past the generation is known to be on disk. If recovery loads an older
+ * snapshot, {@link #pendingKeys(long)} tells it which events to drop from memory again.
+ * </p>
+ */
+class HistoryArchive {
+    static final int DEFAULT_MEMORY_LIMIT = 10_000;
+
+    private static final int SEGMENT_MAGIC = 0x43414C48; // "CALH"
+    private static final int FORMAT_VERSION = 2;
+    /** The first segment format to store the statistics totals of its events. */
+    private static final int SUMMARY_VERSION = 2;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("history-(-?\\d+)-(\\d{2})-(\\d+)\\.seg");
+
+    private final Path directory;
+    private final int memoryLimit;
+    private final NavigableMap<YearMonth, List<Path>> segments;
+    private final Map<Path, Integer> counts;
+    private final NavigableMap<Long, List<Path>> pendingSegments;
+    private long nextSequence;
+
+    /**
+     * Opens the archive in the given directory, discarding any segment a spill wrote
+     * without committing it to the manifest.
+     *
+     * @param directory   the directory holding the segment files
+     * @param memoryLimit how many past events may stay in memory before older ones are spilled
+     * @throws IOException if the directory or manifest cannot be read
+     */
+    HistoryArchive(Path directory, int memoryLimit) throws IOException {
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException("History memory limit must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.memoryLimit = memoryLimit;
+        this.segments = new TreeMap<>();
+        this.counts = new HashMap<>();
+        this.pendingSegments = new TreeMap<>();
+        readManifest();
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                Matcher matcher = SEGMENT_NAME.matcher(entry.getFileName().toString());
+                if (matcher.matches()) {
+                    nextSequence = Math.max(nextSequence, Long.parseLong(matcher.group(3)) + 1);
+                    if (!counts.containsKey(entry.getFileName())) {
+                        Files.delete(entry); // Written by a spill that never committed
+                    }
+                } else if (entry.getFileName().toString().endsWith(".tmp")) {
+                    Files.delete(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the in-memory history has outgrown its limit.
+     *
+     * @param inMemory the number of past events held in memory
+     * @return true if older events should be spilled
+     */
+    boolean shouldSpill(int inMemory) {
+        return inMemory > memoryLimit;
+    }
+
+    /**
+     * Returns how many of the oldest in-memory events to spill so that half the limit remains.
+     *
+     * @param inMemory the number of past events held in memory
+     * @return the number of events to spill
+     */
+    int spillCount(int inMemory) {
+        return inMemory - memoryLimit / 2;
+    }
+
+    /**
+     * Returns the number of past events held on disk.
+     *
+     * @return the number of spilled events
+     */
+    int size() {
+        int total = 0;
+        for (int count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the first month that has spilled events.
+     *
+     * @return the first month with segments, or null if nothing has been spilled
+     */
+    YearMonth firstMonth() {
+        return segments.isEmpty() ? null : segments.firstKey();
+    }
+
+    /**
+     * Returns the last month that has spilled events.
+     *
+     * @return the last month with segments, or null if nothing has been spilled
+     */
+    YearMonth lastMonth() {
+        return segments.isEmpty() ? null : segments.lastKey();
+    }
+
+    /**
+     * Writes the given past events into new segment files, one per month, and commits them.
+     * Earlier spills stay pending until a snapshot at or past their generation is durable.
+     *
+     * @param spilled            the events to spill
+     * @param snapshotGeneration the generation of the snapshot that will no longer hold them
+     * @param durableGeneration  the generation of the newest snapshot known to be on disk
+     * @throws IOException if a segment or the manifest cannot be written
+     */
+    void spill(Collection<Event> spilled, long snapshotGeneration, long durableGeneration) throws IOException {
+        NavigableMap<YearMonth, List<Event>> byMonth = new TreeMap<>();
+        for (Event event : spilled) {
+            byMonth.computeIfAbsent(YearMonth.from(event.getStartTime()), month -> new ArrayList<>()).add(event);
+        }
+
+        List<Path> written = new ArrayList<>();
+        for (Map.Entry<YearMonth, List<Event>> month : byMonth.entrySet()) {
+            Path name = Paths.get(String.format(Locale.ROOT, "history-%04d-%02d-%d.seg",
+                    month.getKey().getYear(), month.getKey().getMonthValue(), nextSequence++));
+            writeSegment(directory.resolve(name), month.getValue());
+            written.add(name);
+            counts.put(name, month.getValue().size());
+            segments.computeIfAbsent(month.getKey(), m -> new ArrayList<>()).add(name);
+        }
+        pendingSegments.headMap(durableGeneration, true).clear();
+        pendingSegments.computeIfAbsent(snapshotGeneration, generation -> new ArrayList<>()).addAll(written);
+        writeManifest();
+    }
+
+    /**
+     * Returns the keys of the events moved by every spill whose snapshot, meant to drop them
+     * from memory, is newer than the one recovered, so recovery can drop them instead.
+     *
+     * @param recoveredGeneration the generation of the snapshot that recovery loaded
+     * @return the keys of events that are on disk but were also recovered into memory
+     * @throws IOException if a segment cannot be read
+     */
+    Set<EventKey> pendingKeys(long recoveredGeneration) throws IOException {
+        Set<EventKey> keys = new HashSet<>();
+        for (List<Path> names : pendingSegments.tailMap(recoveredGeneration, false).values()) {
+            for (Path name : names) {
+                read(name, null, null, event -> keys.add(EventKey.of(event)));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Adds every spilled event to the given statistics, from the totals stored with each
+     * segment. Segments written before segments stored totals have their events read instead.
+     *
+     * @param statistics the statistics to add to
+     * @throws IOException if a segment cannot be read
+     */
+    void addStatistics(StatisticsIndex statistics) throws IOException {
+        long[] totals = new long[StatisticsIndex.WIDTH];
+        for (List<Path> names : segments.values()) {
+            for (Path name : names) {
+                MappedByteBuffer buffer = map(name);
+                if (buffer.getInt(4) < SUMMARY_VERSION) {
+                    read(name, null, null, statistics::add);
+                    continue;
+                }
+                // The summary follows the count, the first and last start, and its own length
+                long day = buffer.getLong(32);
+                buffer.position(40);
+                for (long days = readVarLong(buffer); days > 0; days--) {
+                    Arrays.fill(totals, 0);
+                    int column = 0;
+                    for (long columns = readVarLong(buffer); columns > 0; columns--) {
+                        column += (int) readVarLong(buffer);
+                        totals[column] = readVarLong(buffer);
+                    }
+                    statistics.addDay(day, totals);
+                    day += readVarLong(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first month on or after the given one that has spilled events.
+     *
+     * @param month the month to start from
+     * @return the next month with segments, or null if there is none
+     */
+    YearMonth ceilingMonth(YearMonth month) {
+        return segments.ceilingKey(month);
+    }
+
+    /**
+     * Streams the spilled events of one month that start within [from, to], segment by segment.
+     * Events arrive in start-time order within a segment but not across segments.
+     *
+     * @param month  the month to read
+     * @param from   the first start day to include
+     * @param to     the last start day to include
+     * @param action receives each matching event
+     * @throws IOException if a segment cannot be read
+     */
+    void forEachInMonth(YearMonth month, LocalDate from, LocalDate to, Consumer<Event> action) throws IOException {
+        for (Path name : segments.getOrDefault(month, Collections.emptyList())) {
+            read(name, from, to, action);
+        }
+    }
+
+    private void read(Path name, LocalDate from, LocalDate to, Consumer<Event> action) throws IOException {
+        long fromMillis = from == null ? Long.MIN_VALUE : Calendar.epochMillis(from.atStartOfDay());
+        long toMillis = to == null ? Long.MAX_VALUE : Calendar.epochMillis(to.plusDays(1).atStartOfDay()) - 1;
+
+        MappedByteBuffer buffer = map(name);
+        int version = buffer.getInt(4);
+        int count = buffer.getInt();
+        long start = buffer.getLong();
+        long lastStart = buffer.getLong();
+        if (lastStart < fromMillis || start > toMillis) {
+            return; // Nothing in this segment falls into the range
+        }
+        if (version >= SUMMARY_VERSION) {
+            int summaryLength = buffer.getInt();
+            buffer.position(buffer.position() + summaryLength);
+        }
+        String[] dictionary = new String[buffer.getInt() + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            dictionary[i] = readString(buffer);
+        }
+
+        for (int i = 0; i < count; i++) {
+            start += readVarLong(buffer);
+            long end = start + readVarLong(buffer);
+            if (start > toMillis) {
+                return; // Rows are sorted by start time
+            }
+            String title = dictionary[(int) readVarLong(buffer)];
+            String location = dictionary[(int) readVarLong(buffer)];
+            String description = dictionary[(int) readVarLong(buffer)];
+            String priority = dictionary[(int) readVarLong(buffer)];
+            String id = readNullableString(buffer);
+            if (start >= fromMillis) {
+                action.accept(new Event(title, start, end,
+                        location, id, description, priority));
+            }
+        }
+    }
+
+    /**
+     * Maps a segment file and checks its header.
+     *
+     * @return the segment, positioned after its magic number and format version
+     */
+    private MappedByteBuffer map(Path name) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(directory.resolve(name), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != SEGMENT_MAGIC) {
+            throw new IOException("Not a history segment: " + name);
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported history segment version " + version + ": " + name);
+        }
+        return buffer;
+    }
+
+    private static void writeSegment(Path path, List<Event> events) throws IOException {
+        List<Event> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparing(EventKey::of));
+
+        // Dictionary index 0 stands for null
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (Event event : sorted) {
+            for (String value : new String[]{event.getTitle(), event.getLocation(), event.getDescription(), event.getPriority()}) {
+                if (value != null) {
+                    dictionary.putIfAbsent(value, dictionary.size() + 1);
+                }
+            }
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            long first = sorted.get(0).getStartMillis();
+            out.writeInt(SEGMENT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sorted.size());
+            out.writeLong(first);
+            out.writeLong(sorted.get(sorted.size() - 1).getStartMillis());
+            byte[] summary = summarize(sorted);
+            out.writeInt(summary.length);
+            out.write(summary);
+            out.writeInt(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                writeString(out, value);
+            }
+
+            long previous = first;
+            for (Event event : sorted) {
+                long start = event.getStartMillis();
+                writeVarLong(out, start - previous);
+                writeVarLong(out, event.getEndMillis() - start);
+                writeVarLong(out, code(dictionary, event.getTitle()));
+                writeVarLong(out, code(dictionary, event.getLocation()));
+                writeVarLong(out, code(dictionary, event.getDescription()));
+                writeVarLong(out, code(dictionary, event.getPriority()));
+                writeNullableString(out, event.getId());
+                previous = start;
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Encodes the statistics totals of a segment's events for each start day that has any:
+     * the first day, the number of days, then for each day the non-zero columns as pairs of
+     * the gap from the previous column and the value, followed by the gap to the next day.
+     * Every value is a sum of additions, so none is negative.
+     */
+    private static byte[] summarize(List<Event> sorted) throws IOException {
+        StatisticsIndex statistics = new StatisticsIndex();
+        TreeSet<Long> days = new TreeSet<>();
+        for (Event event : sorted) {
+            statistics.add(event);
+            days.add(Math.floorDiv(event.getStartMillis(), StatisticsIndex.MILLIS_PER_DAY));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(days.first());
+        writeVarLong(out, days.size());
+        for (long day : days) {
+            long[] totals = statistics.sum(day, day);
+            int columns = 0;
+            for (long value : totals) {
+                if (value != 0) {
+                    columns++;
+                }
+            }
+            writeVarLong(out, columns);
+            int previous = 0;
+            for (int column = 0; column < totals.length; column++) {
+                if (totals[column] != 0) {
+                    writeVarLong(out, column - previous);
+                    writeVarLong(out, totals[column]);
+                    previous = column;
+                }
+            }
+            Long next = days.higher(day);
+            writeVarLong(out, next == null ? 0 : next - day);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void readManifest() throws IOException {
+        Path manifest = directory.resolve("manifest");
+        if (!Files.exists(manifest)) {
+            return;
+        }
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split(" ");
+            if (fields[0].equals("segment")) {
+                Path name = Paths.get(fields[1]);
+                Matcher matcher = SEGMENT_NAME.matcher(fields[1]);
+                if (!matcher.matches()) {
+                    throw new IOException("Bad segment name in history manifest: " + fields[1]);
+                }
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                segments.computeIfAbsent(month, m -> new ArrayList<>()).add(name);
+                counts.put(name, Integer.parseInt(fields[2]));
+            } else if (fields[0].equals("pending")) {
+                List<Path> names = pendingSegments.computeIfAbsent(Long.parseLong(fields[1]), generation -> new ArrayList<>());
+                for (int i = 2; i < fields.length; i++) {
+                    names.add(Paths.get(fields[i]));
+                }
+            }
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder manifest = new StringBuilder("version ").append(FORMAT_VERSION).append('\n');
+        for (Map.Entry<Long, List<Path>> pending : pendingSegments.entrySet()) {
+            manifest.append("pending ").append(pending.getKey());
+            for (Path name : pending.getValue()) {
+                manifest.append(' ').append(name);
+            }
+            manifest.append('\n');
+        }
+        for (List<Path> names : segments.values()) {
+            for (Path name : names) {
+                manifest.append("segment ").append(name).append(' ').append(counts.get(name)).append('\n');
+            }
+        }
+
+        Path temp = directory.resolve("manifest.tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            file.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+            file.getFD().sync();
+        }
+        Files.move(temp, directory.resolve("manifest"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static int code(Map<String, Integer> dictionary, String value) {
+        return value == null ? 0 : dictionary.get(value);
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) readVarLong(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readNullableString(ByteBuffer buffer) {
+        int length = (int) readVarLong(buffer);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,399 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Reads the events of an iCalendar (RFC 5545) stream, one VEVENT at a time. The stream is read
+ * through a fixed-size buffer and only the event being parsed is held in memory, so files of
+ * any size can be read in constant memory.
+ * <p>
+ * Each VEVENT becomes an {@link Event}: SUMMARY is the title, DTSTART and DTEND the times,
+ * and LOCATION, UID, DESCRIPTION and PRIORITY the fields of the same names. A missing DTEND
+ * is taken from DURATION, or else the event lasts a day if it starts on a date and no time
+ * at all if it starts at a time. Times in UTC or with a TZID known to {@link ZoneId} are
+ * converted to the reader's time zone; other times are taken as they are. Events without a
+ * UID get one derived from their start and title, so reading the same file twice yields the
+ * same IDs. PRIORITY 1 to 4 reads as High, 5 as Medium and 6 to 9 as Low.
+ * </p>
+ * <p>
+ * Other components, such as VTODO and VTIMEZONE, and components nested in an event, such as
+ * VALARM, are skipped. So are events that cannot be read, such as those without a DTSTART or
+ * ending before they start; {@link #getSkippedCount()} says how many.
+ * </p>
+ */
+public class ICalendarReader implements EventReader {
+    /** The longest content line accepted after unfolding, so a malformed file cannot exhaust memory. */
+    static final int MAX_LINE_LENGTH = 1 << 20;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final Reader in;
+    private final ZoneId zone;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringBuilder line = new StringBuilder();
+    private final StringDictionary strings = new StringDictionary();
+    private long lineNumber;
+    private int skipped;
+
+    /**
+     * Constructs a reader over a character stream, converting times to the system time zone.
+     *
+     * @param in the iCalendar text
+     */
+    public ICalendarReader(Reader in) {
+        this(in, ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs a reader over a character stream.
+     *
+     * @param in   the iCalendar text
+     * @param zone the time zone that times in UTC or with a TZID are converted to
+     */
+    public ICalendarReader(Reader in, ZoneId zone) {
+        this.in = in;
+        this.zone = zone;
+    }
+
+    /**
+     * Opens a reader over a UTF-8 iCalendar file, replacing any malformed bytes.
+     *
+     * @param path the file to read
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+    public static ICalendarReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new ICalendarReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE));
+    }
+
+    /**
+     * Reads the next event.
+     *
+     * @return the next event, or null at the end of the stream
+     * @throws IOException if the stream cannot be read or holds a line longer than {@value #MAX_LINE_LENGTH} characters
+     */
+    @Override
+    public Event next() throws IOException {
+        String content;
+        while ((content = readLine()) != null) {
+            if (content.equalsIgnoreCase("BEGIN:VEVENT")) {
+                Event event = readEvent();
+                if (event != null) {
+                    return event;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of events read so far that were skipped because they could not be read.
+     *
+     * @return the number of skipped events
+     */
+    @Override
+    public int getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * Returns the number of physical lines read so far.
+     *
+     * @return the current line number
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the properties of an event up to its END line.
+     *
+     * @return the event, or null if it was skipped
+     */
+    private Event readEvent() throws IOException {
+        String title = "";
+        String location = "";
+        String id = null;
+        String description = "";
+        String priority = "";
+        LocalDateTime start = null;
+        LocalDateTime end = null;
+        Duration duration = null;
+        boolean allDay = false;
+        boolean valid = true;
+        int depth = 0;
+
+        String content;
+        while ((content = readLine()) != null) {
+            int colon = valueStart(content);
+            if (colon < 0) {
+                continue;
+            }
+            String head = content.substring(0, colon);
+            String value = content.substring(colon + 1);
+            String name = propertyName(head);
+            if (name.equals("BEGIN")) {
+                depth++;
+                continue;
+            }
+            if (name.equals("END")) {
+                if (depth-- == 0) {
+                    break;
+                }
+                continue;
+            }
+            if (depth > 0) {
+                continue; // A property of a nested component such as an alarm
+            }
+            try {
+                switch (name) {
+                    case "SUMMARY":
+                        title = unescape(value);
+                        break;
+                    case "LOCATION":
+                        location = unescape(value);
+                        break;
+                    case "UID":
+                        id = unescape(value);
+                        break;
+                    case "DESCRIPTION":
+                        description = unescape(value);
+                        break;
+                    case "PRIORITY":
+                        priority = priorityLabel(value);
+                        break;
+                    case "DTSTART":
+                        allDay = isDate(head, value);
+                        start = parseTime(head, value);
+                        break;
+                    case "DTEND":
+                        end = parseTime(head, value);
+                        break;
+                    case "DURATION":
+                        duration = parseDuration(value);
+                        break;
+                    default:
+                        // Other properties have no counterpart in an event
+                }
+            } catch (DateTimeException | NumberFormatException e) {
+                valid = false;
+            }
+        }
+        if (content == null || !valid || start == null) {
+            skipped++; // Cut off by the end of the stream, or missing what an event needs
+            return null;
+        }
+
+        if (end == null) {
+            end = duration != null ? start.plus(duration) : allDay ? start.plusDays(1) : start;
+        }
+        if (end.isBefore(start)) {
+            skipped++;
+            return null;
+        }
+        if (id == null || id.isEmpty()) {
+            id = UUID.nameUUIDFromBytes((start + "\n" + title).getBytes(StandardCharsets.UTF_8)).toString();
+        }
+        return new Event(strings.share(title), start, end, strings.share(location), id, description, priority);
+    }
+
+    /**
+     * Reads the next content line, joining folded lines and skipping blank ones.
+     *
+     * @return the unfolded line, or null at the end of the stream
+     */
+    private String readLine() throws IOException {
+        line.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                return line.length() > 0 ? line.toString() : null;
+            }
+            if (c == '\n') {
+                lineNumber++;
+                int next = peek();
+                if (next == ' ' || next == '\t') {
+                    read(); // A folded line continues after the leading whitespace
+                } else if (line.length() > 0) {
+                    return line.toString();
+                }
+            } else if (c != '\r') {
+                if (line.length() == MAX_LINE_LENGTH) {
+                    throw new IOException("Line " + (lineNumber + 1) + " is longer than " + MAX_LINE_LENGTH + " characters");
+                }
+                line.append((char) c);
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    /**
+     * Finds the colon separating a property's name and parameters from its value, skipping
+     * colons inside quoted parameter values.
+     *
+     * @return the index of the colon, or -1 if there is none
+     */
+    private static int valueStart(String content) {
+        boolean quoted = false;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String propertyName(String head) {
+        int semicolon = head.indexOf(';');
+        return (semicolon < 0 ? head : head.substring(0, semicolon)).trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the value of a property parameter, without quotes.
+     *
+     * @return the value, or null if the parameter is absent
+     */
+    private static String parameter(String head, String name) {
+        for (String part : head.split(";")) {
+            int equals = part.indexOf('=');
+            if (equals > 0 && part.substring(0, equals).trim().equalsIgnoreCase(name)) {
+                String value = part.substring(equals + 1).trim();
+                return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDate(String head, String value) {
+        return "DATE".equalsIgnoreCase(parameter(head, "VALUE")) || value.trim().length() == 8;
+    }
+
+    /**
+     * Parses a DATE or DATE-TIME value: a date starts at midnight, a time ending in Z is in UTC,
+     * and a time with a TZID is in that zone if {@link ZoneId} knows it.
+     */
+    private LocalDateTime parseTime(String head, String value) {
+        String text = value.trim();
+        if (isDate(head, text)) {
+            return LocalDate.parse(text, DateTimeFormatter.BASIC_ISO_DATE).atStartOfDay();
+        }
+        if (text.endsWith("Z") || text.endsWith("z")) {
+            LocalDateTime utc = LocalDateTime.parse(text.substring(0, text.length() - 1), DATE_TIME);
+            return utc.atOffset(ZoneOffset.UTC).atZoneSameInstant(zone).toLocalDateTime();
+        }
+        LocalDateTime local = LocalDateTime.parse(text, DATE_TIME);
+        String tzid = parameter(head, "TZID");
+        if (tzid == null) {
+            return local;
+        }
+        try {
+            ZoneId source = ZoneId.of(tzid.startsWith("/") ? tzid.substring(1) : tzid);
+            return local.atZone(source).withZoneSameInstant(zone).toLocalDateTime();
+        } catch (DateTimeException e) {
+            return local; // Defined only by a VTIMEZONE in the file, such as a Windows zone name
+        }
+    }
+
+    /**
+     * Parses a DURATION value such as PT1H30M, P1D or P2W.
+     */
+    private static Duration parseDuration(String value) {
+        String text = value.trim().toUpperCase(Locale.ROOT);
+        Duration duration;
+        int weeks = text.indexOf('W');
+        if (weeks > 0) {
+            int from = text.indexOf('P') + 1;
+            duration = Duration.ofDays(7 * Long.parseLong(text.substring(from, weeks)));
+            if (text.startsWith("-")) {
+                duration = duration.negated();
+            }
+        } else {
+            duration = Duration.parse(text.startsWith("+") ? text.substring(1) : text);
+        }
+        if (duration.isNegative()) {
+            throw new DateTimeException("Negative duration: " + value);
+        }
+        return duration;
+    }
+
+    private static String priorityLabel(String value) {
+        int level = Integer.parseInt(value.trim());
+        if (level >= 1 && level <= 4) {
+            return Priority.HIGH.getLabel();
+        } else if (level == 5) {
+            return Priority.MEDIUM.getLabel();
+        } else if (level >= 6 && level <= 9) {
+            return Priority.LOW.getLabel();
+        }
+        return "";
+    }
+
+    /**
+     * Undoes the escaping of a TEXT value: \n and \N become line breaks, and \\, \; and \,
+     * the characters escaped.
+     */
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                text.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else {
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+}
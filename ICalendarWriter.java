@@ -0,0 +1,203 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes events to an iCalendar (RFC 5545) stream, one VEVENT per event, as they are handed
+ * over. Text is encoded into a fixed-size buffer that is written to the channel whenever it
+ * fills, so any number of events can be written in constant memory.
+ * <p>
+ * Times are written as local times without a zone, the way the calendar keeps them. Text is
+ * escaped and long lines are folded at 75 octets, as the format requires. Priorities are
+ * written as 1 for High, 5 for Medium and 9 for Low, which {@link ICalendarReader} reads back
+ * as the same labels. The calendar is finished by {@link #close()}.
+ * </p>
+ */
+public class ICalendarWriter implements Closeable, Flushable {
+    /** The longest line the format allows, in octets, not counting the line break. */
+    static final int MAX_LINE_OCTETS = 75;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder();
+    private final String stamp;
+    private int written;
+    private boolean closed;
+
+    /**
+     * Constructs a writer over a channel and writes the start of the calendar.
+     *
+     * @param channel the channel to write to, closed with the writer
+     * @throws IOException if the channel cannot be written
+     */
+    public ICalendarWriter(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.stamp = DATE_TIME.format(LocalDateTime.now(ZoneOffset.UTC)) + "Z";
+        writeLine("BEGIN:VCALENDAR");
+        writeLine("VERSION:2.0");
+        writeLine("PRODID:-//Calendar Manager//Calendar Manager//EN");
+        writeLine("CALSCALE:GREGORIAN");
+    }
+
+    /**
+     * Creates or replaces an iCalendar file and opens a writer over it.
+     *
+     * @param path the file to write
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    public static ICalendarWriter open(Path path) throws IOException {
+        return new ICalendarWriter(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Writes an event as a VEVENT.
+     *
+     * @param event the event to write
+     * @throws IOException if the channel cannot be written
+     */
+    public void write(Event event) throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+        writeLine("BEGIN:VEVENT");
+        writeText("UID", event.getId());
+        writeLine("DTSTAMP:" + stamp);
+        writeLine("DTSTART:" + DATE_TIME.format(event.getStartTime()));
+        writeLine("DTEND:" + DATE_TIME.format(event.getEndTime()));
+        writeText("SUMMARY", event.getTitle());
+        writeText("LOCATION", event.getLocation());
+        writeText("DESCRIPTION", event.getDescription());
+        Priority priority = event.getPriorityLevel();
+        if (priority != null) {
+            writeLine("PRIORITY:" + (priority == Priority.HIGH ? 1 : priority == Priority.MEDIUM ? 5 : 9));
+        }
+        writeLine("END:VEVENT");
+        written++;
+    }
+
+    /**
+     * Returns the number of events written so far.
+     *
+     * @return the number of events written
+     */
+    public int getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Writes everything buffered so far to the channel.
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the end of the calendar, flushes it and closes the channel.
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeLine("END:VCALENDAR");
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes a TEXT property, escaping backslashes, semicolons, commas and line breaks. Empty
+     * values are left out.
+     */
+    private void writeText(String name, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        StringBuilder content = new StringBuilder(name.length() + 1 + value.length()).append(name).append(':');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    content.append('\\').append(c);
+                    break;
+                case '\n':
+                    content.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    content.append(c);
+            }
+        }
+        writeLine(content);
+    }
+
+    /**
+     * Writes a content line, folding it so that no physical line exceeds {@value #MAX_LINE_OCTETS}
+     * octets. Lines are only folded between characters, never inside a UTF-8 sequence.
+     */
+    private void writeLine(CharSequence content) throws IOException {
+        line.setLength(0);
+        int octets = 0;
+        for (int i = 0; i < content.length(); ) {
+            int codePoint = Character.codePointAt(content, i);
+            int charCount = Character.charCount(codePoint);
+            int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (octets + size > MAX_LINE_OCTETS) {
+                line.append("\r\n ");
+                octets = 1; // The leading space of the continuation counts towards its length
+            }
+            line.append(content, i, i + charCount);
+            octets += size;
+            i += charCount;
+        }
+        line.append("\r\n");
+        encode(CharBuffer.wrap(line));
+    }
+
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+        CoderResult result;
+        while ((result = encoder.encode(chars, buffer, true)).isOverflow()) {
+            flush();
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flush();
+        }
+    }
+}
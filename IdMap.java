@@ -0,0 +1,283 @@
+import java.util.Arrays;
+
+/**
+ * A persistent map from event ID to event, stored as a hash array mapped trie. Each level of
+ * the trie consumes five bits of the ID's hash and keeps only the slots actually in use, packed
+ * into an array indexed through a 32-bit bitmap, so lookups take at most seven steps.
+ * <p>
+ * Maps are never changed once built: adding or removing an event returns a new map that copies
+ * only the nodes on the path to its slot and shares everything else with the old one.
+ * </p>
+ */
+final class IdMap {
+    /** The map holding no events. */
+    static final IdMap EMPTY = new IdMap(BitmapNode.EMPTY, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    private IdMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of events in the map.
+     *
+     * @return the number of events
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the event with the given ID.
+     *
+     * @param id the event ID, or null
+     * @return the event, or null if the map holds none with that ID; never one for a null ID
+     */
+    Event get(String id) {
+        return id == null ? null : root.get(id, hash(id), 0);
+    }
+
+    /**
+     * Returns a map holding the events of this one plus the given event, which replaces any
+     * event with the same ID.
+     *
+     * @param event the event to add, which must have an ID
+     * @return the new map
+     */
+    IdMap put(Event event) {
+        boolean[] added = new boolean[1];
+        Node updated = root.put(event, hash(event.getId()), 0, added);
+        return new IdMap(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map holding the events of this one except the one with the given ID.
+     *
+     * @param id the ID of the event to remove, or null
+     * @return the new map, or this map if it holds no event with that ID
+     */
+    IdMap remove(String id) {
+        if (id == null) {
+            return this;
+        }
+        Node updated = root.remove(id, hash(id), 0);
+        if (updated == root) {
+            return this;
+        }
+        return new IdMap(updated == null ? BitmapNode.EMPTY : updated, size - 1);
+    }
+
+    private static int hash(String id) {
+        int hash = id.hashCode();
+        return hash ^ (hash >>> 16); // Spread the high bits into the levels used by small maps
+    }
+
+    /**
+     * A node of the trie. Slots hold either an {@link Event} or a child node.
+     */
+    private interface Node {
+        Event get(String id, int hash, int shift);
+
+        Node put(Event event, int hash, int shift, boolean[] added);
+
+        /**
+         * @return the new node, this node if nothing was removed, or null if the node is now empty
+         */
+        Node remove(String id, int hash, int shift);
+    }
+
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Event get(String id, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[index(bit)];
+            if (slot instanceof Node) {
+                return ((Node) slot).get(id, hash, shift + BITS);
+            }
+            Event event = (Event) slot;
+            return event.getId().equals(id) ? event : null;
+        }
+
+        @Override
+        public Node put(Event event, int hash, int shift, boolean[] added) {
+            int bit = bit(hash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, grown, 0, index);
+                grown[index] = event;
+                System.arraycopy(slots, index, grown, index + 1, slots.length - index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, grown);
+            }
+
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Node) {
+                replacement = ((Node) slot).put(event, hash, shift + BITS, added);
+            } else {
+                Event existing = (Event) slot;
+                if (existing.getId().equals(event.getId())) {
+                    replacement = event;
+                } else {
+                    added[0] = true;
+                    replacement = split(existing, hash(existing.getId()), event, hash, shift + BITS);
+                }
+            }
+            return withSlot(index, replacement);
+        }
+
+        @Override
+        public Node remove(String id, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                Node child = (Node) slot;
+                Node updated = child.remove(id, hash, shift + BITS);
+                if (updated == child) {
+                    return this;
+                }
+                if (updated != null) {
+                    // A child left holding a single event is folded back into this node
+                    Event single = singleEvent(updated);
+                    return withSlot(index, single != null ? single : updated);
+                }
+            } else if (!((Event) slot).getId().equals(id)) {
+                return this;
+            }
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] shrunk = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, shrunk, 0, index);
+            System.arraycopy(slots, index + 1, shrunk, index, slots.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, shrunk);
+        }
+
+        private BitmapNode withSlot(int index, Object slot) {
+            Object[] copy = slots.clone();
+            copy[index] = slot;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private static Event singleEvent(Node node) {
+            if (node instanceof BitmapNode) {
+                Object[] slots = ((BitmapNode) node).slots;
+                return slots.length == 1 && slots[0] instanceof Event ? (Event) slots[0] : null;
+            }
+            Event[] events = ((CollisionNode) node).events;
+            return events.length == 1 ? events[0] : null;
+        }
+
+        /**
+         * Builds the smallest subtree holding two events with different IDs.
+         */
+        private static Node split(Event first, int firstHash, Event second, int secondHash, int shift) {
+            if (firstHash == secondHash) {
+                return new CollisionNode(firstHash, new Event[] {first, second});
+            }
+            int firstBit = bit(firstHash, shift);
+            int secondBit = bit(secondHash, shift);
+            if (firstBit == secondBit) {
+                return new BitmapNode(firstBit, new Object[] {split(first, firstHash, second, secondHash, shift + BITS)});
+            }
+            Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0
+                    ? new Object[] {first, second} : new Object[] {second, first};
+            return new BitmapNode(firstBit | secondBit, slots);
+        }
+    }
+
+    /**
+     * Holds the events whose IDs have exactly the same hash.
+     */
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Event[] events;
+
+        CollisionNode(int hash, Event[] events) {
+            this.hash = hash;
+            this.events = events;
+        }
+
+        private int indexOf(String id) {
+            for (int i = 0; i < events.length; i++) {
+                if (events[i].getId().equals(id)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Event get(String id, int hash, int shift) {
+            int index = indexOf(id);
+            return index < 0 ? null : events[index];
+        }
+
+        @Override
+        public Node put(Event event, int hash, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // Another hash reached this level: push the collisions one level down next to it
+                Node node = new BitmapNode(BitmapNode.bit(this.hash, shift), new Object[] {this});
+                return node.put(event, hash, shift, added);
+            }
+            int index = indexOf(event.getId());
+            Event[] copy;
+            if (index < 0) {
+                copy = Arrays.copyOf(events, events.length + 1);
+                copy[events.length] = event;
+                added[0] = true;
+            } else {
+                copy = events.clone();
+                copy[index] = event;
+            }
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public Node remove(String id, int hash, int shift) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return this;
+            }
+            if (events.length == 1) {
+                return null;
+            }
+            Event[] shrunk = new Event[events.length - 1];
+            System.arraycopy(events, 0, shrunk, 0, index);
+            System.arraycopy(events, index + 1, shrunk, index, events.length - index - 1);
+            return new CollisionNode(hash, shrunk);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Decides what {@link Calendar#addEvents(java.util.Collection, ImportPolicy)} does with a batch
+ * of events in which some conflict. Either way the batch is applied as one change, so no other
+ * thread ever sees part of it.
+ */
+public enum ImportPolicy {
+    /**
+     * A single conflict rejects the whole batch, and the calendar is left as it was.
+     */
+    ALL_OR_NOTHING,
+
+    /**
+     * The events that conflict are left out and every other event is added.
+     */
+    SKIP_CONFLICTS
+}
@@ -0,0 +1,124 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of {@link Calendar#addEvents(java.util.Collection, ImportPolicy)}: how many events
+ * were added, and every event of the batch that was not, with the reason why.
+ */
+public final class ImportReport {
+    /**
+     * Why an event of a batch could not be added.
+     */
+    public enum Reason {
+        /** The event has no ID. */
+        MISSING_ID,
+        /**
+         * An active event, or an earlier event of the batch, already has the same ID, or a past
+         * event has the same ID and start.
+         */
+        DUPLICATE_ID,
+        /** The event overlaps an active event. */
+        OVERLAPS_EXISTING,
+        /** The event overlaps an earlier event of the batch. */
+        OVERLAPS_BATCH
+    }
+
+    /**
+     * One event of a batch that could not be added.
+     */
+    public static final class Conflict {
+        private final Event event;
+        private final Reason reason;
+        private final Event conflictingEvent;
+
+        Conflict(Event event, Reason reason, Event conflictingEvent) {
+            this.event = event;
+            this.reason = reason;
+            this.conflictingEvent = conflictingEvent;
+        }
+
+        /**
+         * Returns the event that could not be added.
+         *
+         * @return the event from the batch
+         */
+        public Event getEvent() {
+            return event;
+        }
+
+        /**
+         * Returns why the event could not be added.
+         *
+         * @return the reason
+         */
+        public Reason getReason() {
+            return reason;
+        }
+
+        /**
+         * Returns the active event or earlier batch event that this one clashes with.
+         *
+         * @return the other event, or null if the event was rejected on its own
+         */
+        public Event getConflictingEvent() {
+            return conflictingEvent;
+        }
+
+        @Override
+        public String toString() {
+            return reason + " " + event.getId() + (conflictingEvent == null ? "" : " with " + conflictingEvent.getId());
+        }
+    }
+
+    private final int submitted;
+    private final int added;
+    private final List<Conflict> conflicts;
+
+    ImportReport(int submitted, int added, List<Conflict> conflicts) {
+        this.submitted = submitted;
+        this.added = added;
+        this.conflicts = Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * Returns the number of events in the batch.
+     *
+     * @return the number of events submitted
+     */
+    public int getSubmittedCount() {
+        return submitted;
+    }
+
+    /**
+     * Returns the number of events that were added.
+     *
+     * @return the number of events added
+     */
+    public int getAddedCount() {
+        return added;
+    }
+
+    /**
+     * Returns every event of the batch that could not be added, in start-time order. Under
+     * {@link ImportPolicy#ALL_OR_NOTHING} any conflict means no event at all was added.
+     *
+     * @return the conflicts, empty if the whole batch fit
+     */
+    public List<Conflict> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Checks whether every event of the batch was added.
+     *
+     * @return true if there were no conflicts
+     */
+    public boolean isComplete() {
+        return conflicts.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Added " + added + " of " + submitted + " events, " + conflicts.size() + " conflicts";
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Throughput and lag figures for a {@link WatchFolderIngester}, as returned by
+ * {@link WatchFolderIngester#getMetrics()}. Instances are immutable snapshots.
+ * <p>
+ * Lag is measured from the time a file was last modified, as the file system reports it, to
+ * the time its events were in the calendar and on disk.
+ * </p>
+ */
+public final class IngestMetrics {
+    private final long filesIngested;
+    private final long filesFailed;
+    private final long eventsAdded;
+    private final long eventsRejected;
+    private final long eventsSkipped;
+    private final double eventsPerSecond;
+    private final int filesWaiting;
+    private final int queuedBatches;
+    private final int queueCapacity;
+    private final long lastLagMillis;
+    private final long maxLagMillis;
+    private final long oldestWaitingMillis;
+
+    IngestMetrics(long filesIngested, long filesFailed, long eventsAdded, long eventsRejected, long eventsSkipped,
+                  double eventsPerSecond, int filesWaiting, int queuedBatches, int queueCapacity,
+                  long lastLagMillis, long maxLagMillis, long oldestWaitingMillis) {
+        this.filesIngested = filesIngested;
+        this.filesFailed = filesFailed;
+        this.eventsAdded = eventsAdded;
+        this.eventsRejected = eventsRejected;
+        this.eventsSkipped = eventsSkipped;
+        this.eventsPerSecond = eventsPerSecond;
+        this.filesWaiting = filesWaiting;
+        this.queuedBatches = queuedBatches;
+        this.queueCapacity = queueCapacity;
+        this.lastLagMillis = lastLagMillis;
+        this.maxLagMillis = maxLagMillis;
+        this.oldestWaitingMillis = oldestWaitingMillis;
+    }
+
+    /**
+     * Returns the number of files whose events were all applied and checkpointed.
+     *
+     * @return the number of files ingested
+     */
+    public long getFilesIngested() {
+        return filesIngested;
+    }
+
+    /**
+     * Returns the number of files that could not be read or applied. They are tried again when
+     * they change or the ingester restarts.
+     *
+     * @return the number of failed attempts
+     */
+    public long getFilesFailed() {
+        return filesFailed;
+    }
+
+    /**
+     * Returns the number of events added to the calendar.
+     *
+     * @return the number of events added
+     */
+    public long getEventsAdded() {
+        return eventsAdded;
+    }
+
+    /**
+     * Returns the number of events read but not added because they clashed with other events
+     * or reused their IDs.
+     *
+     * @return the number of events rejected
+     */
+    public long getEventsRejected() {
+        return eventsRejected;
+    }
+
+    /**
+     * Returns the number of entries in ingested files that could not be read as events.
+     *
+     * @return the number of entries skipped
+     */
+    public long getEventsSkipped() {
+        return eventsSkipped;
+    }
+
+    /**
+     * Returns the rate at which events were read and applied over the last few seconds, whether
+     * they were added or rejected.
+     *
+     * @return the recent throughput in events per second
+     */
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /**
+     * Returns the number of files seen but not yet ingested, whether waiting to settle, waiting
+     * for a parser or being read and applied.
+     *
+     * @return the number of files waiting
+     */
+    public int getFilesWaiting() {
+        return filesWaiting;
+    }
+
+    /**
+     * Returns the number of parsed batches waiting to be applied to the calendar.
+     *
+     * @return the number of queued batches
+     */
+    public int getQueuedBatches() {
+        return queuedBatches;
+    }
+
+    /**
+     * Returns the number of batches the queue holds before parsers have to wait.
+     *
+     * @return the queue capacity
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Returns the lag of the most recently ingested file.
+     *
+     * @return the lag in milliseconds, or 0 if no file was ingested yet
+     */
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    /**
+     * Returns the largest lag of any file ingested so far.
+     *
+     * @return the lag in milliseconds, or 0 if no file was ingested yet
+     */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    /**
+     * Returns how long the oldest file not yet ingested has been waiting since it was last
+     * modified. This is the lag the next file will have at least, and grows while the
+     * ingester falls behind.
+     *
+     * @return the age in milliseconds, or 0 if no file is waiting
+     */
+    public long getOldestWaitingMillis() {
+        return oldestWaitingMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Files: %d ingested, %d failed, %d waiting%n"
+                        + "Events: %d added, %d rejected, %d skipped, %.0f/s%n"
+                        + "Queue: %d of %d batches%n"
+                        + "Lag: %d ms last, %d ms max, %d ms oldest waiting",
+                filesIngested, filesFailed, filesWaiting, eventsAdded, eventsRejected, eventsSkipped, eventsPerSecond,
+                queuedBatches, queueCapacity, lastLagMillis, maxLagMillis, oldestWaitingMillis);
+    }
+}
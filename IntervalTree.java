@@ -0,0 +1,466 @@
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An augmented AVL tree of event intervals, ordered by start time and then by event ID.
+ * Every node also records the latest end time found in its subtree, which lets overlap
+ * queries skip whole subtrees and answer in O(log n + k) time, and the size of its subtree,
+ * which lets events be looked up by their position in start-time order in O(log n) time.
+ * <p>
+ * The tree is persistent: nodes are never changed once built, and inserting or removing an
+ * interval returns a new tree that copies only the O(log n) nodes on the path to it and
+ * shares the rest with the old one. Any number of threads may therefore read a tree, and
+ * keep reading it after it has been superseded, without locking.
+ * </p>
+ */
+final class IntervalTree {
+    /** The tree holding no intervals. */
+    static final IntervalTree EMPTY = new IntervalTree(null);
+
+    private final Node root;
+
+    /**
+     * A single interval in the tree together with its subtree augmentation.
+     */
+    private static final class Node {
+        final long start;
+        final long end;
+        final Event event;
+        final Node left;
+        final Node right;
+        final long maxEnd;
+        final int height;
+        final int count;
+
+        Node(long start, long end, Event event, Node left, Node right) {
+            this.start = start;
+            this.end = end;
+            this.event = event;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.count = 1 + count(left) + count(right);
+            long maxEnd = end;
+            if (left != null && left.maxEnd > maxEnd) {
+                maxEnd = left.maxEnd;
+            }
+            if (right != null && right.maxEnd > maxEnd) {
+                maxEnd = right.maxEnd;
+            }
+            this.maxEnd = maxEnd;
+        }
+
+        /**
+         * Returns a copy of this node with other children.
+         */
+        Node with(Node left, Node right) {
+            return left == this.left && right == this.right ? this : new Node(start, end, event, left, right);
+        }
+    }
+
+    private IntervalTree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the number of intervals stored in the tree.
+     *
+     * @return the number of intervals
+     */
+    int size() {
+        return count(root);
+    }
+
+    /**
+     * Returns a tree holding the intervals of this one plus an event interval.
+     *
+     * @param start the start of the interval in epoch milliseconds
+     * @param end   the end of the interval in epoch milliseconds
+     * @param event the event covering the interval
+     * @return the new tree
+     */
+    IntervalTree insert(long start, long end, Event event) {
+        return new IntervalTree(insert(root, new Node(start, end, event, null, null)));
+    }
+
+    /**
+     * Returns a tree holding the intervals of this one plus those of many events. A batch that
+     * is large next to the tree is merged with it in one pass and the result built balanced in
+     * O(n + m) time; a small one is inserted an event at a time.
+     *
+     * @param sorted events ordered by start time and then by ID, none of them already in the tree
+     * @return the new tree
+     */
+    IntervalTree insertAll(List<Event> sorted) {
+        int size = size();
+        if (sorted.size() < size / 8) {
+            IntervalTree tree = this;
+            for (Event event : sorted) {
+                tree = tree.insert(event.getStartMillis(), event.getEndMillis(), event);
+            }
+            return tree;
+        }
+        Event[] merged = new Event[size + sorted.size()];
+        Iterator<Event> existing = values().iterator();
+        Event next = existing.hasNext() ? existing.next() : null;
+        int i = 0;
+        for (Event event : sorted) {
+            while (next != null && compare(next.getStartMillis(), next.getId(), event) < 0) {
+                merged[i++] = next;
+                next = existing.hasNext() ? existing.next() : null;
+            }
+            merged[i++] = event;
+        }
+        while (next != null) {
+            merged[i++] = next;
+            next = existing.hasNext() ? existing.next() : null;
+        }
+        return new IntervalTree(build(merged, 0, merged.length));
+    }
+
+    private static Node build(Event[] sorted, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Event event = sorted[middle];
+        return new Node(event.getStartMillis(), event.getEndMillis(), event, build(sorted, from, middle), build(sorted, middle + 1, to));
+    }
+
+    /**
+     * Returns a tree holding the intervals of this one except the one with the given start
+     * time and event ID.
+     *
+     * @param start the start of the interval in epoch milliseconds
+     * @param id    the ID of the event covering the interval
+     * @return the new tree, or this tree if no interval matched
+     */
+    IntervalTree remove(long start, String id) {
+        Node removed = remove(root, start, id);
+        return removed == root ? this : new IntervalTree(removed);
+    }
+
+    /**
+     * Returns the event at the given position in start-time order.
+     *
+     * @param index the position, from 0 to {@code size() - 1}
+     * @return the event at that position
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    Event get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftCount = count(node.left);
+            if (index < leftCount) {
+                node = node.left;
+            } else if (index > leftCount) {
+                index -= leftCount + 1;
+                node = node.right;
+            } else {
+                return node.event;
+            }
+        }
+    }
+
+    /**
+     * Returns the position in start-time order of the interval with the given start time and event ID.
+     *
+     * @param start the start of the interval in epoch milliseconds
+     * @param id    the ID of the event covering the interval
+     * @return the position of the interval, or -1 if none matched
+     */
+    int indexOf(long start, String id) {
+        Node node = root;
+        int before = 0;
+        while (node != null) {
+            int cmp = compare(start, id, node);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                before += count(node.left) + 1;
+                node = node.right;
+            } else {
+                return before + count(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of intervals ordered before the given start time and event ID, which
+     * is the position such an interval has or would have.
+     *
+     * @param start the start time in epoch milliseconds
+     * @param id    the event ID, or null to count only the intervals starting earlier
+     * @return the number of intervals ordered before
+     */
+    int rank(long start, String id) {
+        Node node = root;
+        int before = 0;
+        while (node != null) {
+            if (compare(start, id, node) <= 0) {
+                node = node.left;
+            } else {
+                before += count(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return before;
+    }
+
+    /**
+     * Checks whether any stored interval overlaps the closed range [from, to].
+     * Intervals that merely touch the range at an endpoint count as overlapping.
+     *
+     * @param from the start of the range in epoch milliseconds
+     * @param to   the end of the range in epoch milliseconds
+     * @return true if at least one interval overlaps the range
+     */
+    boolean overlapsAny(long from, long to) {
+        return findOverlapping(from, to) != null;
+    }
+
+    /**
+     * Finds a stored interval that overlaps the closed range [from, to], as {@link #overlapsAny(long, long)} checks.
+     *
+     * @param from the start of the range in epoch milliseconds
+     * @param to   the end of the range in epoch milliseconds
+     * @return the event of an overlapping interval, or null if there is none
+     */
+    Event findOverlapping(long from, long to) {
+        Node node = root;
+        while (node != null) {
+            if (node.start <= to && node.end >= from) {
+                return node.event;
+            }
+            // Descend left only if something there can still reach the range
+            if (node.left != null && node.left.maxEnd >= from) {
+                node = node.left;
+            } else if (node.start <= to) {
+                node = node.right;
+            } else {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects, in start-time order, the events whose intervals overlap the given range.
+     *
+     * @param from      the start of the range in epoch milliseconds
+     * @param to        the end of the range in epoch milliseconds
+     * @param inclusive true to treat the range and intervals as closed, false for half-open
+     * @param out       the list receiving the overlapping events
+     */
+    void collectOverlapping(long from, long to, boolean inclusive, List<Event> out) {
+        collectOverlapping(root, from, to, inclusive, out);
+    }
+
+    private void collectOverlapping(Node node, long from, long to, boolean inclusive, List<Event> out) {
+        if (node == null || !endsAfter(node.maxEnd, from, inclusive)) {
+            return;
+        }
+        collectOverlapping(node.left, from, to, inclusive, out);
+        if (!startsBefore(node.start, to, inclusive)) {
+            return; // Everything to the right starts even later
+        }
+        if (endsAfter(node.end, from, inclusive)) {
+            out.add(node.event);
+        }
+        collectOverlapping(node.right, from, to, inclusive, out);
+    }
+
+    /**
+     * Collects, in start-time order, the events starting within the half-open range [from, to).
+     *
+     * @param from the earliest start in epoch milliseconds (inclusive)
+     * @param to   the latest start in epoch milliseconds (exclusive)
+     * @param out  the list receiving the events
+     */
+    void collectStartingBetween(long from, long to, List<Event> out) {
+        collectStartingBetween(root, from, to, out);
+    }
+
+    private void collectStartingBetween(Node node, long from, long to, List<Event> out) {
+        if (node == null) {
+            return;
+        }
+        if (node.start >= from) {
+            collectStartingBetween(node.left, from, to, out);
+            if (node.start >= to) {
+                return;
+            }
+            out.add(node.event);
+        }
+        collectStartingBetween(node.right, from, to, out);
+    }
+
+    /**
+     * Returns every event in the tree, in start-time order, as a read-only collection backed by
+     * the tree. Since the tree never changes, neither does the collection.
+     *
+     * @return the events in start-time order
+     */
+    Collection<Event> values() {
+        return new AbstractCollection<Event>() {
+            @Override
+            public Iterator<Event> iterator() {
+                return new InOrder(root);
+            }
+
+            @Override
+            public int size() {
+                return IntervalTree.this.size();
+            }
+        };
+    }
+
+    /**
+     * Walks a subtree in order, keeping the path to the next node on a stack.
+     */
+    private static final class InOrder implements Iterator<Event> {
+        private final Deque<Node> path = new ArrayDeque<>();
+
+        InOrder(Node root) {
+            descendLeft(root);
+        }
+
+        private void descendLeft(Node node) {
+            for (; node != null; node = node.left) {
+                path.push(node);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public Event next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = path.pop();
+            descendLeft(node.right);
+            return node.event;
+        }
+    }
+
+    private static boolean startsBefore(long start, long to, boolean inclusive) {
+        return inclusive ? start <= to : start < to;
+    }
+
+    private static boolean endsAfter(long end, long from, boolean inclusive) {
+        return inclusive ? end >= from : end > from;
+    }
+
+    private static int compare(long start, String id, Node node) {
+        int result = Long.compare(start, node.start);
+        if (result != 0) {
+            return result;
+        }
+        return EventKey.compareIds(id, node.event.getId());
+    }
+
+    private static int compare(long start, String id, Event event) {
+        int result = Long.compare(start, event.getStartMillis());
+        if (result != 0) {
+            return result;
+        }
+        return EventKey.compareIds(id, event.getId());
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.event.getId(), node) < 0) {
+            return rebalance(node.with(insert(node.left, added), node.right));
+        }
+        return rebalance(node.with(node.left, insert(node.right, added)));
+    }
+
+    /**
+     * Removes an interval from a subtree.
+     *
+     * @return the new subtree, or the same subtree if no interval matched
+     */
+    private static Node remove(Node node, long start, String id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            Node left = remove(node.left, start, id);
+            return left == node.left ? node : rebalance(node.with(left, node.right));
+        } else if (cmp > 0) {
+            Node right = remove(node.right, start, id);
+            return right == node.right ? node : rebalance(node.with(node.left, right));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return rebalance(successor.with(node.left, removeMin(node.right)));
+    }
+
+    private static Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return rebalance(node.with(removeMin(node.left), node.right));
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int count(Node node) {
+        return node == null ? 0 : node.count;
+    }
+
+    private static Node rebalance(Node node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            Node left = node.left;
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(node.with(left, node.right));
+        }
+        if (balance < -1) {
+            Node right = node.right;
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(node.with(node.left, right));
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        return pivot.with(pivot.left, node.with(pivot.right, node.right));
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        return pivot.with(node.with(node.left, pivot.left), pivot.right);
+    }
+}
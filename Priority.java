@@ -0,0 +1,38 @@
+/**
+ * The priority levels offered when creating or updating an event.
+ */
+public enum Priority {
+    HIGH("High"),
+    MEDIUM("Medium"),
+    LOW("Low");
+
+    private final String label;
+
+    Priority(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the label shown for this priority.
+     *
+     * @return the display label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Finds the priority with the given label, ignoring case.
+     *
+     * @param label the label to look up
+     * @return the matching priority, or null if the label is not one of the known levels
+     */
+    public static Priority fromLabel(String label) {
+        for (Priority priority : values()) {
+            if (priority.label.equalsIgnoreCase(label)) {
+                return priority;
+            }
+        }
+        return null;
+    }
+}
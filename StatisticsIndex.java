@@ -0,0 +1,199 @@
+import java.util.*;
+
+/**
+ * Keeps running totals of events per start day so that counts, booked time, priority
+ * breakdowns and the hour-of-week heatmap of any range of days can be read without
+ * visiting the events themselves.
+ * <p>
+ * Days are grouped into fixed-size chunks, each holding a Fenwick tree over its days plus
+ * the totals of the whole chunk. A range query reads at most two partial chunks through
+ * their trees and takes the totals of the chunks in between. Only chunks that hold events
+ * are kept, and a chunk allocates a tree node only when one of its days first reaches it,
+ * so a chunk with a single busy day holds at most nine nodes rather than all 257.
+ * </p>
+ */
+class StatisticsIndex {
+    static final int COUNT = 0;
+    static final int BOOKED = 1;
+    /** First of the per-priority counts, in {@link Priority} order followed by unknown labels. */
+    static final int PRIORITY = 2;
+    /** First of the booked-time cells, one per hour of the week starting Monday 00:00. */
+    static final int HEATMAP = PRIORITY + Priority.values().length + 1;
+    static final int HOURS_PER_WEEK = 7 * 24;
+    static final int WIDTH = HEATMAP + HOURS_PER_WEEK;
+
+    private static final int CHUNK_DAYS = 256;
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+    static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    private static final long MILLIS_PER_WEEK = 7 * MILLIS_PER_DAY;
+
+    private final NavigableMap<Long, Chunk> chunks;
+    private final long[] delta;
+
+    /**
+     * Constructs an empty statistics index.
+     */
+    StatisticsIndex() {
+        chunks = new TreeMap<>();
+        delta = new long[WIDTH];
+    }
+
+    /**
+     * Adds an event to the totals of its start day.
+     *
+     * @param event the event to add
+     */
+    void add(Event event) {
+        update(event, 1);
+    }
+
+    /**
+     * Removes an event from the totals of its start day.
+     *
+     * @param event the event to remove
+     */
+    void remove(Event event) {
+        update(event, -1);
+    }
+
+    private void update(Event event, int sign) {
+        Arrays.fill(delta, 0);
+        long start = event.getStartMillis();
+        long end = Math.max(start, event.getEndMillis());
+        delta[COUNT] = sign;
+        delta[BOOKED] = sign * (end - start);
+        Priority priority = event.getPriorityLevel();
+        delta[PRIORITY + (priority == null ? Priority.values().length : priority.ordinal())] = sign;
+
+        // Whole weeks book every hour equally; only the remainder has to be walked hour by hour
+        long weeks = (end - start) / MILLIS_PER_WEEK;
+        if (weeks > 0) {
+            Arrays.fill(delta, HEATMAP, WIDTH, sign * weeks * MILLIS_PER_HOUR);
+        }
+        for (long time = start + weeks * MILLIS_PER_WEEK; time < end; ) {
+            long hourEnd = Math.min(Math.floorDiv(time, MILLIS_PER_HOUR) * MILLIS_PER_HOUR + MILLIS_PER_HOUR, end);
+            delta[HEATMAP + hourOfWeek(time)] += sign * (hourEnd - time);
+            time = hourEnd;
+        }
+
+        addDay(Math.floorDiv(start, MILLIS_PER_DAY), delta);
+    }
+
+    /**
+     * Adds totals summed elsewhere, such as those a history segment stores for its events, to
+     * the totals of one start day.
+     *
+     * @param day    the start day, as an epoch day
+     * @param totals the values to add, indexed by the column constants of this class
+     */
+    void addDay(long day, long[] totals) {
+        long chunkIndex = Math.floorDiv(day, CHUNK_DAYS);
+        Chunk chunk = chunks.computeIfAbsent(chunkIndex, index -> new Chunk());
+        chunk.add((int) (day - chunkIndex * CHUNK_DAYS), totals);
+        if (chunk.totals[COUNT] == 0) {
+            chunks.remove(chunkIndex);
+        }
+    }
+
+    /**
+     * Returns the hour of the week, counted from Monday 00:00, that a time falls in.
+     * 1970-01-01 was a Thursday, three days after the start of its week.
+     */
+    private static int hourOfWeek(long millis) {
+        return (int) Math.floorMod(Math.floorDiv(millis, MILLIS_PER_HOUR) + 3 * 24, HOURS_PER_WEEK);
+    }
+
+    /**
+     * Sums every column over the events starting on the days in the closed range [fromDay, toDay].
+     *
+     * @param fromDay the first day of the range, as an epoch day
+     * @param toDay   the last day of the range, as an epoch day
+     * @return the sums, indexed by the column constants of this class
+     */
+    long[] sum(long fromDay, long toDay) {
+        long[] sums = new long[WIDTH];
+        forEachChunk(fromDay, toDay, (chunk, from, to) -> chunk.sum(from, to, sums, WIDTH));
+        return sums;
+    }
+
+    /**
+     * Counts the events starting on the days in the closed range [fromDay, toDay].
+     *
+     * @param fromDay the first day of the range, as an epoch day
+     * @param toDay   the last day of the range, as an epoch day
+     * @return the number of events
+     */
+    long count(long fromDay, long toDay) {
+        long[] sums = new long[1];
+        forEachChunk(fromDay, toDay, (chunk, from, to) -> chunk.sum(from, to, sums, 1));
+        return sums[0];
+    }
+
+    private void forEachChunk(long fromDay, long toDay, ChunkRange action) {
+        if (fromDay > toDay) {
+            return;
+        }
+        long first = Math.floorDiv(fromDay, CHUNK_DAYS);
+        long last = Math.floorDiv(toDay, CHUNK_DAYS);
+        for (Map.Entry<Long, Chunk> entry : chunks.subMap(first, true, last, true).entrySet()) {
+            long base = entry.getKey() * CHUNK_DAYS;
+            int from = entry.getKey() == first ? (int) (fromDay - base) : 0;
+            int to = entry.getKey() == last ? (int) (toDay - base) : CHUNK_DAYS - 1;
+            action.accept(entry.getValue(), from, to);
+        }
+    }
+
+    private interface ChunkRange {
+        void accept(Chunk chunk, int from, int to);
+    }
+
+    /**
+     * A Fenwick tree over the days of one chunk, storing all columns of a node side by side.
+     * A node that no day has reached yet is null and counts as all zeros.
+     */
+    private static class Chunk {
+        private final long[][] tree = new long[CHUNK_DAYS + 1][];
+        private final long[] totals = new long[WIDTH];
+
+        void add(int day, long[] delta) {
+            for (int node = day + 1; node <= CHUNK_DAYS; node += node & -node) {
+                long[] values = tree[node];
+                if (values == null) {
+                    values = tree[node] = new long[WIDTH];
+                }
+                for (int column = 0; column < WIDTH; column++) {
+                    values[column] += delta[column];
+                }
+            }
+            for (int column = 0; column < WIDTH; column++) {
+                totals[column] += delta[column];
+            }
+        }
+
+        /**
+         * Adds the first {@code columns} columns summed over days [from, to] of this chunk to {@code sums}.
+         */
+        void sum(int from, int to, long[] sums, int columns) {
+            if (from == 0 && to == CHUNK_DAYS - 1) {
+                for (int column = 0; column < columns; column++) {
+                    sums[column] += totals[column];
+                }
+                return;
+            }
+            prefix(to + 1, 1, sums, columns);
+            prefix(from, -1, sums, columns);
+        }
+
+        private void prefix(int days, int sign, long[] sums, int columns) {
+            for (int node = days; node > 0; node -= node & -node) {
+                long[] values = tree[node];
+                if (values == null) {
+                    continue;
+                }
+                for (int column = 0; column < columns; column++) {
+                    sums[column] += sign * values[column];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Hands out one shared instance for each distinct string, so the many events that repeat a
+ * title or location hold a single copy of it instead of one each. Unlike {@link String#intern()},
+ * the dictionary belongs to whoever reads the events, and its entries are weak: a string no
+ * event refers to any more is dropped from the dictionary and can be collected.
+ */
+final class StringDictionary {
+    private final Map<String, WeakReference<String>> entries = new WeakHashMap<>();
+
+    /**
+     * Returns the shared instance of a string, making this one the shared instance if the
+     * dictionary holds no equal string yet.
+     *
+     * @param value the string to look up, or null
+     * @return an equal string, shared with every earlier caller that passed an equal one, or null
+     */
+    synchronized String share(String value) {
+        if (value == null) {
+            return null;
+        }
+        WeakReference<String> entry = entries.get(value);
+        String shared = entry == null ? null : entry.get();
+        if (shared == null) {
+            entries.put(value, new WeakReference<>(value));
+            shared = value;
+        }
+        return shared;
+    }
+}
@@ -0,0 +1,49 @@
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects calendar changes as they happen and hands them to the user interface on the event
+ * dispatch thread at most once per frame, so a burst of changes costs one update instead of
+ * one per change. Changes may arrive on any thread.
+ */
+class SwingChangeBatcher implements CalendarListener {
+    /** Roughly one frame at 60 Hz. */
+    private static final int FRAME_MILLIS = 16;
+
+    private final Consumer<List<CalendarChange>> target;
+    private final Timer timer;
+    private List<CalendarChange> queued;
+
+    /**
+     * Constructs a batcher delivering to the given target.
+     *
+     * @param target receives each batch on the event dispatch thread
+     */
+    SwingChangeBatcher(Consumer<List<CalendarChange>> target) {
+        this.target = target;
+        this.queued = new ArrayList<>();
+        this.timer = new Timer(FRAME_MILLIS, e -> deliver());
+        this.timer.setRepeats(false);
+    }
+
+    @Override
+    public synchronized void calendarChanged(List<CalendarChange> changes) {
+        queued.addAll(changes);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    private void deliver() {
+        List<CalendarChange> batch;
+        synchronized (this) {
+            batch = queued;
+            queued = new ArrayList<>();
+        }
+        if (!batch.isEmpty()) {
+            target.accept(batch);
+        }
+    }
+}
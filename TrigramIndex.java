@@ -0,0 +1,140 @@
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * An inverted index from lowercase character trigrams to the events whose text field
+ * contains them. Substring queries of three or more characters only examine the events
+ * in the shortest matching posting list instead of scanning every event.
+ */
+class TrigramIndex {
+    static final int GRAM_LENGTH = 3;
+
+    private final Function<Event, String> field;
+    private final Map<String, Set<Event>> postings;
+    private final Map<Event, String> foldedText;
+
+    /**
+     * Constructs an empty index over the given event field.
+     *
+     * @param field extracts the indexed text from an event
+     */
+    TrigramIndex(Function<Event, String> field) {
+        this.field = field;
+        this.postings = new HashMap<>();
+        this.foldedText = new HashMap<>();
+    }
+
+    /**
+     * Adds an event to the index.
+     *
+     * @param event the event to add
+     */
+    void add(Event event) {
+        String text = fold(field.apply(event));
+        foldedText.put(event, text);
+        for (String gram : grams(text)) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>()).add(event);
+        }
+    }
+
+    /**
+     * Adds many events to the index. Events are grouped by their text first, so text shared by
+     * many events, as titles, locations and priorities usually are, is folded and split into
+     * trigrams only once.
+     *
+     * @param events the events to add
+     */
+    void addAll(Collection<Event> events) {
+        Map<String, List<Event>> byText = new HashMap<>();
+        for (Event event : events) {
+            byText.computeIfAbsent(field.apply(event), text -> new ArrayList<>()).add(event);
+        }
+        for (Map.Entry<String, List<Event>> group : byText.entrySet()) {
+            String text = fold(group.getKey());
+            List<Event> sharing = group.getValue();
+            for (Event event : sharing) {
+                foldedText.put(event, text);
+            }
+            for (String gram : grams(text)) {
+                postings.computeIfAbsent(gram, g -> new HashSet<>()).addAll(sharing);
+            }
+        }
+    }
+
+    /**
+     * Removes an event from the index.
+     *
+     * @param event the event to remove
+     */
+    void remove(Event event) {
+        String text = foldedText.remove(event);
+        if (text == null) {
+            return;
+        }
+        for (String gram : grams(text)) {
+            Set<Event> posting = postings.get(gram);
+            if (posting != null && posting.remove(event) && posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Finds the indexed events whose field contains the query, ignoring case.
+     *
+     * @param query the text to look for
+     * @return the matching events in no particular order, or null if the query is
+     *         shorter than a trigram and the caller has to scan instead
+     */
+    List<Event> search(String query) {
+        String folded = fold(query);
+        if (folded.length() < GRAM_LENGTH) {
+            return null;
+        }
+
+        // Every match must appear in every posting list, so the shortest one bounds the work
+        Set<Event> candidates = null;
+        for (String gram : grams(folded)) {
+            Set<Event> posting = postings.get(gram);
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            if (candidates == null || posting.size() < candidates.size()) {
+                candidates = posting;
+            }
+        }
+
+        List<Event> matches = new ArrayList<>();
+        for (Event event : candidates) {
+            if (foldedText.get(event).contains(folded)) {
+                matches.add(event);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Checks whether an indexed event's field contains a query that is already lowercase.
+     * This reuses the folded text kept for the event, so it allocates nothing.
+     *
+     * @param event        the event to check
+     * @param foldedQuery  the lowercase text to look for
+     * @return true if the event is indexed and its field contains the query
+     */
+    boolean contains(Event event, String foldedQuery) {
+        String text = foldedText.get(event);
+        return text != null && text.contains(foldedQuery);
+    }
+
+    private static String fold(String text) {
+        return text == null ? "" : text.toLowerCase();
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,588 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Feeds the CSV and iCalendar files dropped into a directory into a {@link Calendar} as they
+ * arrive, in the formats read by {@link CsvEventReader} and {@link ICalendarReader}.
+ * <p>
+ * A watcher thread notices new and changed files through a {@link WatchService} and, once a
+ * file has stopped changing for a moment, hands it to a fixed pool of parser threads. Parsers
+ * read a file one event at a time and put its events, in batches, on a bounded queue, waiting
+ * whenever the queue is full. A single writer thread takes batches off the queue, merging
+ * small ones, and adds them with {@link Calendar#addEvents(Collection, ImportPolicy)}. So the
+ * events in flight never exceed what the queue holds, however fast files arrive, and a calendar
+ * that falls behind slows the parsers down instead of piling up events.
+ * </p>
+ * <p>
+ * Once every event of a file is in the calendar and forced to disk, the file's name, size and
+ * modification time are appended to a checkpoint file in the directory. On start the directory
+ * is scanned and only files without a matching checkpoint are read, so a restart neither
+ * imports a file twice nor misses one dropped while the ingester was down. A file cut off by a
+ * crash or {@link #close()} is read again from the start; the events it had already added are
+ * then rejected as duplicate IDs. Events that clash with others are skipped, as under
+ * {@link ImportPolicy#SKIP_CONFLICTS}, and counted in the {@link #getMetrics() metrics}.
+ * </p>
+ */
+public class WatchFolderIngester implements Closeable {
+    /** The name of the checkpoint file kept in the watched directory. */
+    static final String CHECKPOINT_NAME = ".ingested";
+
+    private static final long POLL_MILLIS = 100;
+    private static final int THROUGHPUT_WINDOW_SECONDS = 10;
+
+    private final Calendar calendar;
+    private final Path directory;
+    private final int batchSize;
+    private final long settleNanos;
+    private final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+    /** The files seen but not yet ingested, by name. */
+    private final Map<String, FileJob> waiting = new ConcurrentHashMap<>();
+    private final FileChannel checkpointLog;
+    private final WatchService watchService;
+    private final ExecutorService parsers;
+    private final Semaphore parseSlots;
+    private final BlockingQueue<Batch> queue;
+    private final int queueCapacity;
+    private final Thread watcher;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // Written by the writer thread, read by getMetrics()
+    private final Object metricsLock = new Object();
+    private final long startedMillis = System.currentTimeMillis();
+    private final long[] throughputSeconds = new long[THROUGHPUT_WINDOW_SECONDS];
+    private final long[] throughputCounts = new long[THROUGHPUT_WINDOW_SECONDS];
+    private long filesIngested;
+    private long filesFailed;
+    private long eventsAdded;
+    private long eventsRejected;
+    private long eventsSkipped;
+    private long lastLagMillis;
+    private long maxLagMillis;
+
+    /**
+     * Starts ingesting the files in a directory with one parser per two processors, a queue of
+     * 8 batches of 10,000 events and files taken to be complete after a second without change.
+     *
+     * @param calendar  the calendar to add events to
+     * @param directory the directory to watch, created if missing
+     * @throws IOException if the directory or its checkpoint file cannot be opened
+     */
+    public WatchFolderIngester(Calendar calendar, Path directory) throws IOException {
+        this(calendar, directory, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 8, 10_000, 1_000);
+    }
+
+    /**
+     * Starts ingesting the files in a directory.
+     *
+     * @param calendar      the calendar to add events to
+     * @param directory     the directory to watch, created if missing
+     * @param parserThreads how many files are parsed at once
+     * @param queueCapacity how many parsed batches may wait to be applied before parsers wait
+     * @param batchSize     the most events parsed into one batch or applied in one write
+     * @param settleMillis  how long a file must stay unchanged before it is read, so files
+     *                      still being written are not read half-way
+     * @throws IOException if the directory or its checkpoint file cannot be opened
+     */
+    public WatchFolderIngester(Calendar calendar, Path directory, int parserThreads, int queueCapacity, int batchSize,
+                               long settleMillis) throws IOException {
+        if (parserThreads <= 0 || queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Parser threads, queue capacity and batch size must be positive");
+        }
+        this.calendar = calendar;
+        this.directory = Files.createDirectories(directory);
+        this.batchSize = batchSize;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.queueCapacity = queueCapacity;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.parseSlots = new Semaphore(parserThreads);
+
+        loadCheckpoints();
+        this.checkpointLog = FileChannel.open(directory.resolve(CHECKPOINT_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        AtomicInteger parserNumber = new AtomicInteger();
+        this.parsers = Executors.newFixedThreadPool(parserThreads,
+                runnable -> daemon(runnable, "ingest-parser-" + parserNumber.incrementAndGet()));
+        this.watcher = daemon(this::watch, "ingest-watcher");
+        this.writer = daemon(this::drain, "ingest-writer");
+        watcher.start();
+        writer.start();
+    }
+
+    /**
+     * Returns the directory being watched.
+     *
+     * @return the watched directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the current throughput and lag figures.
+     *
+     * @return a snapshot of the metrics
+     */
+    public IngestMetrics getMetrics() {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (FileJob job : waiting.values()) {
+            if (job.modified > 0) {
+                oldest = Math.min(oldest, job.modified);
+            }
+        }
+        synchronized (metricsLock) {
+            long second = now / 1000;
+            long events = 0;
+            for (int slot = 0; slot < THROUGHPUT_WINDOW_SECONDS; slot++) {
+                if (second - throughputSeconds[slot] < THROUGHPUT_WINDOW_SECONDS) {
+                    events += throughputCounts[slot];
+                }
+            }
+            long window = Math.max(1, Math.min(THROUGHPUT_WINDOW_SECONDS, second - startedMillis / 1000 + 1));
+            return new IngestMetrics(filesIngested, filesFailed, eventsAdded, eventsRejected, eventsSkipped,
+                    (double) events / window, waiting.size(), queue.size(), queueCapacity,
+                    lastLagMillis, maxLagMillis, now - oldest);
+        }
+    }
+
+    /**
+     * Stops watching and reading files. Batches already parsed are still applied; files not
+     * yet completely applied are left without a checkpoint and read again after a restart.
+     *
+     * @throws IOException if the checkpoint file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            watcher.interrupt();
+            watcher.join();
+            parsers.shutdownNow();
+            parsers.awaitTermination(1, TimeUnit.MINUTES);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watchService.close();
+            checkpointLog.close();
+        }
+    }
+
+    /**
+     * Watches the directory until closed, handing files that have settled to the parsers.
+     */
+    private void watch() {
+        scan();
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (key != null) {
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else {
+                        notice(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Watched directory " + directory + " is no longer accessible.");
+                    return;
+                }
+                if (overflow) {
+                    scan(); // Events were dropped, so look at everything again
+                }
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Notices every file in the directory, as on start or after watch events were lost.
+     */
+    private void scan() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                notice(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void notice(Path file) {
+        String name = file.getFileName().toString();
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (!name.startsWith(".") && name.indexOf('\n') < 0 && (lower.endsWith(".csv") || lower.endsWith(".ics"))) {
+            waiting.computeIfAbsent(name, n -> new FileJob(n, file));
+        }
+    }
+
+    /**
+     * Hands the waiting files that have not changed for the settle time to free parsers. Files
+     * left over wait for the next round, so a busy pool holds files back instead of queueing them.
+     */
+    private void dispatch() {
+        long now = System.nanoTime();
+        for (FileJob job : waiting.values()) {
+            if (parseSlots.availablePermits() == 0) {
+                return;
+            }
+            if (job.started) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(job.path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                waiting.remove(job.name); // Gone before it was read
+                continue;
+            }
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (size != job.size || modified != job.modified) {
+                job.size = size;
+                job.modified = modified;
+                job.stableSince = now;
+                continue;
+            }
+            if (now - job.stableSince < settleNanos) {
+                continue;
+            }
+            Checkpoint checkpoint = checkpoints.get(job.name);
+            if (checkpoint != null && checkpoint.size == size && checkpoint.modified == modified) {
+                waiting.remove(job.name); // Already ingested as it is
+                continue;
+            }
+            parseSlots.acquireUninterruptibly();
+            job.started = true;
+            parsers.execute(() -> parse(job));
+        }
+    }
+
+    /**
+     * Reads a file and queues its events in batches, the last one marked as such.
+     */
+    private void parse(FileJob job) {
+        try {
+            try (EventReader reader = open(job.path)) {
+                List<Event> events = new ArrayList<>();
+                Event event;
+                while ((event = reader.next()) != null) {
+                    events.add(event);
+                    if (events.size() == batchSize) {
+                        queue.put(new Batch(job, events, false));
+                        events = new ArrayList<>();
+                    }
+                }
+                job.skipped = reader.getSkippedCount();
+                queue.put(new Batch(job, events, true));
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    job.failure = e;
+                    queue.put(new Batch(job, new ArrayList<>(), true));
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closing; the file has no checkpoint yet, so it is read again after a restart
+        } finally {
+            parseSlots.release();
+        }
+    }
+
+    private static EventReader open(Path file) throws IOException {
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".ics")) {
+            return ICalendarReader.open(file);
+        }
+        return CsvEventReader.open(file);
+    }
+
+    /**
+     * Applies queued batches until closed and every parser has stopped.
+     */
+    private void drain() {
+        List<Batch> batches = new ArrayList<>();
+        while (true) {
+            Batch first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                if (closed && parsers.isTerminated() && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            // Small batches, such as those of small files, are merged into one write
+            batches.clear();
+            batches.add(first);
+            int size = first.events.size();
+            Batch next;
+            while ((next = queue.peek()) != null && size + next.events.size() <= batchSize) {
+                batches.add(queue.poll());
+                size += next.events.size();
+            }
+            apply(batches, size);
+        }
+    }
+
+    private void apply(List<Batch> batches, int size) {
+        List<Event> events = batches.get(0).events;
+        if (batches.size() > 1) {
+            events = new ArrayList<>(size);
+            for (Batch batch : batches) {
+                events.addAll(batch.events);
+            }
+        }
+
+        List<ImportReport.Conflict> conflicts = new ArrayList<>();
+        RuntimeException failure = null;
+        if (!events.isEmpty()) {
+            try {
+                conflicts = calendar.addEvents(events, ImportPolicy.SKIP_CONFLICTS).getConflicts();
+            } catch (RuntimeException e) {
+                failure = e; // The store could not be written, so none of the batch was added
+            }
+        }
+
+        Map<Event, FileJob> owners = null;
+        if (!conflicts.isEmpty() && batches.size() > 1) {
+            owners = new IdentityHashMap<>();
+            for (Batch batch : batches) {
+                for (Event event : batch.events) {
+                    owners.put(event, batch.job);
+                }
+            }
+        }
+        for (ImportReport.Conflict conflict : conflicts) {
+            (owners == null ? batches.get(0).job : owners.get(conflict.getEvent())).rejected++;
+        }
+
+        List<FileJob> finished = new ArrayList<>();
+        for (Batch batch : batches) {
+            if (failure == null) {
+                batch.job.read += batch.events.size();
+            } else if (batch.job.failure == null) {
+                batch.job.failure = failure;
+            }
+            if (batch.last) {
+                finished.add(batch.job);
+            }
+        }
+        synchronized (metricsLock) {
+            long second = System.currentTimeMillis() / 1000;
+            int slot = (int) (second % THROUGHPUT_WINDOW_SECONDS);
+            if (throughputSeconds[slot] != second) {
+                throughputSeconds[slot] = second;
+                throughputCounts[slot] = 0;
+            }
+            throughputCounts[slot] += size;
+        }
+        if (!finished.isEmpty()) {
+            finish(finished);
+        }
+    }
+
+    /**
+     * Checkpoints the files whose events were all applied, once those events are on disk.
+     */
+    private void finish(List<FileJob> finished) {
+        try {
+            calendar.sync();
+            StringBuilder lines = new StringBuilder();
+            for (FileJob job : finished) {
+                if (job.failure == null) {
+                    lines.append(job.size).append('\t').append(job.modified).append('\t').append(job.name).append('\n');
+                }
+            }
+            if (lines.length() > 0) {
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(lines.toString());
+                while (bytes.hasRemaining()) {
+                    checkpointLog.write(bytes);
+                }
+                checkpointLog.force(false);
+            }
+        } catch (IOException e) {
+            for (FileJob job : finished) {
+                if (job.failure == null) {
+                    job.failure = e;
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (FileJob job : finished) {
+            if (job.failure == null) {
+                checkpoints.put(job.name, new Checkpoint(job.size, job.modified));
+            } else {
+                System.err.println("Could not ingest " + job.path + ": " + job.failure.getMessage());
+            }
+            waiting.remove(job.name);
+            synchronized (metricsLock) {
+                if (job.failure == null) {
+                    long lag = Math.max(0, now - job.modified);
+                    filesIngested++;
+                    eventsAdded += job.read - job.rejected;
+                    eventsRejected += job.rejected;
+                    eventsSkipped += job.skipped;
+                    lastLagMillis = lag;
+                    maxLagMillis = Math.max(maxLagMillis, lag);
+                } else {
+                    filesFailed++;
+                    eventsAdded += job.read - job.rejected; // Batches applied before the failure stay
+                }
+            }
+            if (job.failure == null && changedSince(job)) {
+                notice(job.path); // Rewritten while being read; its watch events were ignored meanwhile
+            }
+        }
+    }
+
+    private static boolean changedSince(FileJob job) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(job.path, BasicFileAttributes.class);
+            return attributes.size() != job.size || attributes.lastModifiedTime().toMillis() != job.modified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the checkpoint file and rewrites it with only the entries of files still present,
+     * so it does not grow forever and a line torn by a crash is dropped.
+     */
+    private void loadCheckpoints() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_NAME);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3) {
+                    try {
+                        checkpoints.put(fields[2], new Checkpoint(Long.parseLong(fields[0]), Long.parseLong(fields[1])));
+                    } catch (NumberFormatException e) {
+                        // A torn line; the file it named is read again
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        checkpoints.keySet().removeIf(name -> !Files.exists(directory.resolve(name)));
+
+        Path temp = directory.resolve(CHECKPOINT_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1)) {
+            for (Map.Entry<String, Checkpoint> entry : checkpoints.entrySet()) {
+                out.write(entry.getValue().size + "\t" + entry.getValue().modified + "\t" + entry.getKey() + "\n");
+            }
+            out.flush();
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * The size and modification time a file had when all of its events were applied.
+     */
+    private static final class Checkpoint {
+        final long size;
+        final long modified;
+
+        Checkpoint(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * A file seen in the directory, from the moment it is noticed until it is ingested.
+     */
+    private static final class FileJob {
+        final String name;
+        final Path path;
+        // Written by the watcher until the file is handed to a parser
+        long size = -1;
+        long modified;
+        long stableSince;
+        volatile boolean started;
+        // Written by the parser before its last batch, then by the writer
+        int skipped;
+        Exception failure;
+        int read;
+        int rejected;
+
+        FileJob(String name, Path path) {
+            this.name = name;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Events parsed from one file, in the order read.
+     */
+    private static final class Batch {
+        final FileJob job;
+        final List<Event> events;
+        final boolean last;
+
+        Batch(FileJob job, List<Event> events, boolean last) {
+            this.job = job;
+            this.events = events;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import benchmarks.CalendarDriver;
+import benchmarks.EventSpec;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Implements {@link CalendarDriver} over a {@link Calendar}. It lives in the default package
+ * next to the application classes so it can reach them, including the package-private
+ * constructor that takes times in epoch milliseconds.
+ */
+public class CalendarBenchmarkDriver implements CalendarDriver {
+    private final Calendar calendar = new Calendar();
+
+    @Override
+    public Object newEvent(EventSpec spec) {
+        return new Event(spec.getTitle(), spec.getStartMillis(), spec.getEndMillis(), spec.getLocation(),
+                spec.getId(), spec.getDescription(), spec.getPriority());
+    }
+
+    @Override
+    public boolean addEvent(Object event) {
+        return calendar.addEvent((Event) event);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int addEvents(List<Object> events) {
+        return calendar.addEvents((List<Event>) (List<?>) events, ImportPolicy.SKIP_CONFLICTS).getAddedCount();
+    }
+
+    @Override
+    public boolean removeEventById(String id) {
+        return calendar.removeEventById(id);
+    }
+
+    @Override
+    public Object getEventById(String id) {
+        return calendar.getEventById(id);
+    }
+
+    @Override
+    public Object getEventAt(int index) {
+        return calendar.getEventAt(index);
+    }
+
+    @Override
+    public List<?> viewEvents(String attribute, String filterValue) {
+        return calendar.viewEvents(attribute, filterValue);
+    }
+
+    @Override
+    public List<?> sortEvents(String attribute) {
+        return calendar.sortEvents(attribute);
+    }
+
+    @Override
+    public void refreshEvents() {
+        calendar.refreshEvents();
+    }
+
+    @Override
+    public String generateSummary(LocalDate startDate, LocalDate endDate) {
+        return calendar.generateSummary(startDate, endDate);
+    }
+
+    @Override
+    public String toString(Object event) {
+        return event.toString();
+    }
+
+    @Override
+    public int getEventCount() {
+        return calendar.getEventCount();
+    }
+}
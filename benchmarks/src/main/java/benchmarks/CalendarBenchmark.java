@@ -0,0 +1,143 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the calendar's hot paths on a calendar already holding {@link #size} generated events.
+ * Each operation picks its argument from a fixed rotation of inputs drawn across the whole
+ * calendar, so results reflect the whole range rather than one cached spot. Operations that
+ * would change the calendar undo themselves, so its size stays put for the whole run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class CalendarBenchmark {
+    /** Inputs per rotation; a power of two so the next one is picked with a mask. */
+    private static final int INPUTS = 1024;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    private static final String[] TITLE_QUERIES = {"review", "Standup", "plan", "lunch", "Interview"};
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private CalendarDriver calendar;
+    private Object[] events;
+    private Object[] insertions;
+    private String[] insertionIds;
+    private Object[] collisions;
+    private String[] days;
+    private LocalDate[] weeks;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        EventGenerator generator = new EventGenerator(42, EventGenerator.nextMidnight());
+        List<EventSpec> specs = generator.generate(size);
+        calendar = CalendarDriver.create();
+        for (EventSpec spec : specs) {
+            if (!calendar.addEvent(calendar.newEvent(spec))) {
+                throw new IllegalStateException("Generated events overlap at " + spec.getStartMillis());
+            }
+        }
+
+        Random random = new Random(7);
+        events = new Object[INPUTS];
+        days = new String[INPUTS];
+        weeks = new LocalDate[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            EventSpec spec = specs.get(random.nextInt(specs.size()));
+            events[i] = calendar.newEvent(spec);
+            LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(spec.getStartMillis(), EventGenerator.MILLIS_PER_DAY));
+            days[i] = day.format(DATE);
+            weeks[i] = day;
+        }
+        insertions = new Object[INPUTS];
+        insertionIds = new String[INPUTS];
+        List<EventSpec> free = generator.insertions(specs, INPUTS);
+        for (int i = 0; i < INPUTS; i++) {
+            insertions[i] = calendar.newEvent(free.get(i));
+            insertionIds[i] = free.get(i).getId();
+        }
+        collisions = generator.collisions(specs, INPUTS).stream().map(calendar::newEvent).toArray();
+    }
+
+    private int nextInput() {
+        return next++ & (INPUTS - 1);
+    }
+
+    /**
+     * Adds an event into a free gap and removes it again, so the calendar keeps its size.
+     */
+    @Benchmark
+    public boolean addAndRemoveEvent() {
+        int input = nextInput();
+        calendar.addEvent(insertions[input]);
+        return calendar.removeEventById(insertionIds[input]);
+    }
+
+    /**
+     * Tries to add an event starting at the same time as an existing one, which is rejected.
+     */
+    @Benchmark
+    public boolean addConflictingEvent() {
+        return calendar.addEvent(collisions[nextInput()]);
+    }
+
+    @Benchmark
+    public List<?> viewEventsByTitle() {
+        return calendar.viewEvents("title", TITLE_QUERIES[nextInput() % TITLE_QUERIES.length]);
+    }
+
+    @Benchmark
+    public List<?> viewEventsByDate() {
+        return calendar.viewEvents("date", days[nextInput()]);
+    }
+
+    @Benchmark
+    public List<?> sortEventsByTitle() {
+        return calendar.sortEvents("title");
+    }
+
+    @Benchmark
+    public List<?> sortEventsByDate() {
+        return calendar.sortEvents("date");
+    }
+
+    /**
+     * Refreshes when nothing has ended, as the user interface does on every refresh.
+     */
+    @Benchmark
+    public void refreshEvents() {
+        calendar.refreshEvents();
+    }
+
+    @Benchmark
+    public String generateSummaryForWeek() {
+        LocalDate start = weeks[nextInput()];
+        return calendar.generateSummary(start, start.plusDays(6));
+    }
+
+    @Benchmark
+    public String eventToString() {
+        return calendar.toString(events[nextInput()]);
+    }
+}
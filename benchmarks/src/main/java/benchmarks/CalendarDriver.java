@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The calendar operations exercised by the benchmarks, each driving one fresh {@code Calendar}.
+ * <p>
+ * The application classes live in the default package, which a named package cannot import
+ * and which JMH does not accept benchmarks in. The benchmarks therefore call the calendar
+ * through this interface, implemented by {@code CalendarBenchmarkDriver} in the default package,
+ * and hold events as the opaque objects returned by {@link #newEvent(EventSpec)}. With a single
+ * implementation loaded the calls are inlined, so the indirection does not show in the results.
+ * </p>
+ */
+public interface CalendarDriver {
+    /**
+     * Creates a driver around a new, empty calendar without a backing store.
+     *
+     * @return the driver
+     */
+    static CalendarDriver create() {
+        try {
+            return (CalendarDriver) Class.forName("CalendarBenchmarkDriver").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the calendar driver", e);
+        }
+    }
+
+    /**
+     * Creates an application event from a specification.
+     *
+     * @param spec the fields of the event
+     * @return the event, to be passed back to this driver
+     */
+    Object newEvent(EventSpec spec);
+
+    boolean addEvent(Object event);
+
+    /**
+     * Adds a batch of events in one call, leaving out those that conflict.
+     *
+     * @param events events created by {@link #newEvent(EventSpec)}
+     * @return the number of events added
+     */
+    int addEvents(List<Object> events);
+
+    boolean removeEventById(String id);
+
+    Object getEventById(String id);
+
+    Object getEventAt(int index);
+
+    List<?> viewEvents(String attribute, String filterValue);
+
+    List<?> sortEvents(String attribute);
+
+    void refreshEvents();
+
+    String generateSummary(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Formats an event the way the summary and history views show it.
+     *
+     * @param event an event created by {@link #newEvent(EventSpec)}
+     * @return the event's text
+     */
+    String toString(Object event);
+
+    int getEventCount();
+}
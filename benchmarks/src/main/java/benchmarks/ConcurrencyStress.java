@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how read throughput on one shared calendar scales with threads. A growing number
+ * of threads read the calendar, looking up events by position and ID and searching titles,
+ * while one more thread keeps adding and removing events. Reads share the calendar's lock, so
+ * their throughput should grow with the number of cores until the readers outnumber them.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.ConcurrencyStress [events] [seconds per step] [max threads]
+ * </pre>
+ * The lock's guarantees, that racing additions never double-book a slot and that readers do
+ * not starve the writer, are checked by the calendar module's CalendarLockTest.
+ */
+public class ConcurrencyStress {
+    private static final String[] QUERIES = {"review", "standup", "plan", "lunch", "interview", "sync"};
+
+    public static void main(String[] args) throws InterruptedException {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d available processors%n%n", processors);
+        measureReadScaling(events, seconds, maxThreads);
+    }
+
+    private static void measureReadScaling(int events, int seconds, int maxThreads) throws InterruptedException {
+        EventGenerator generator = new EventGenerator(42, EventGenerator.nextMidnight());
+        List<EventSpec> specs = generator.generate(events);
+        CalendarDriver calendar = CalendarDriver.create();
+        for (EventSpec spec : specs) {
+            calendar.addEvent(calendar.newEvent(spec));
+        }
+        String[] ids = new String[1024];
+        Random random = new Random(1);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = specs.get(random.nextInt(specs.size())).getId();
+        }
+        List<EventSpec> free = generator.insertions(specs, 1024);
+        Object[] insertions = free.stream().map(calendar::newEvent).toArray();
+
+        System.out.printf("Read scaling over %d events, one writer adding and removing events%n", events);
+        System.out.printf("%8s %14s %14s %10s %14s%n", "Readers", "Reads/s", "Per reader", "Speedup", "Writes/s");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            AtomicLong reads = new AtomicLong();
+            AtomicLong writes = new AtomicLong();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Random own = new Random(t);
+                workers.add(new Thread(() -> {
+                    long count = 0;
+                    while (System.nanoTime() < deadline) {
+                        int kind = own.nextInt(50);
+                        if (kind < 30) {
+                            calendar.getEventAt(own.nextInt(calendar.getEventCount()));
+                        } else if (kind < 49) {
+                            calendar.getEventById(ids[own.nextInt(ids.length)]);
+                        } else {
+                            calendar.viewEvents("title", QUERIES[own.nextInt(QUERIES.length)]);
+                        }
+                        count++;
+                    }
+                    reads.addAndGet(count);
+                }));
+            }
+            workers.add(new Thread(() -> {
+                long count = 0;
+                for (int i = 0; System.nanoTime() < deadline; i = (i + 1) % insertions.length) {
+                    calendar.addEvent(insertions[i]);
+                    calendar.removeEventById(free.get(i).getId());
+                    count += 2;
+                }
+                writes.addAndGet(count);
+            }));
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            double perSecond = reads.get() / (double) seconds;
+            if (threads == 1) {
+                baseline = perSecond;
+            }
+            System.out.printf("%8d %14.0f %14.0f %9.2fx %14.0f%n", threads, perSecond, perSecond / threads,
+                    perSecond / baseline, writes.get() / (double) seconds);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package benchmarks;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates a reproducible calendar of events shaped like a real one rather than evenly spaced:
+ * weekdays are packed with meetings between 08:00 and 18:00, weekends are nearly empty, and every
+ * few weeks a conference or trip blocks several whole days. The calendar rejects overlapping
+ * events, so generated events never overlap; the clashes a real user runs into are produced
+ * separately by {@link #collisions(List, int)}.
+ * <p>
+ * The defaults describe a busy office calendar; the setters change the density, the lengths
+ * and the wording of the events before generating.
+ * </p>
+ */
+public class EventGenerator {
+    static final long MILLIS_PER_MINUTE = 60_000L;
+    static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    private static final String[] TITLES = {
+            "Standup", "Design review", "Sprint planning", "Retrospective", "One-on-one", "Customer call",
+            "Interview", "Lunch and learn", "Budget review", "Architecture sync", "Release planning",
+            "Incident review", "Team lunch", "Quarterly review", "Onboarding session", "Focus time"
+    };
+    private static final String[] LOCATIONS = {
+            "Room 101", "Room 204", "Main auditorium", "Cafeteria", "Video call", "Client office",
+            "Board room", "Lab 3", "Library"
+    };
+    private static final String[] TRIPS = {"Conference", "Offsite", "Training course", "Site visit"};
+    private static final String[] DESCRIPTIONS = {
+            "Weekly check-in with the team", "Bring the latest numbers", "Agenda shared in advance",
+            "Follow up on open action items", "Walk through the proposal", ""
+    };
+    /** Meeting lengths in minutes, repeated to weight the common ones. */
+    private static final int[] DURATIONS = {15, 15, 30, 30, 30, 30, 45, 60, 60, 60, 90, 120};
+    /** Priorities weighted towards medium, as most events are routine. */
+    private static final String[] PRIORITIES = {"High", "Medium", "Medium", "Medium", "Low", "Low"};
+
+    private static final int WORK_START_MINUTE = 8 * 60;
+    private static final int WORK_END_MINUTE = 18 * 60;
+    /** Touching endpoints count as a conflict, so consecutive events leave at least this gap. */
+    private static final int MIN_GAP_MINUTES = 5;
+
+    private final long seed;
+    private final long originMillis;
+    private int minPerWeekday = 4;
+    private int maxPerWeekday = 12;
+    private int maxPerWeekendDay = 1;
+    private int tripOneIn = 40;
+    private int[] durations = DURATIONS;
+    private String[] titles = TITLES;
+    private String[] locations = LOCATIONS;
+
+    /**
+     * Constructs a generator.
+     *
+     * @param seed         the seed that makes the output reproducible
+     * @param originMillis the midnight starting the first generated day
+     */
+    public EventGenerator(long seed, long originMillis) {
+        this.seed = seed;
+        this.originMillis = originMillis;
+    }
+
+    /**
+     * Sets how many events a weekday holds, as long as they fit into working hours.
+     * Weekend days hold up to a tenth of the maximum, and at least one on some days.
+     *
+     * @param min the fewest events on a weekday
+     * @param max the most events on a weekday
+     */
+    public void setEventsPerWeekday(int min, int max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Invalid events per weekday: " + min + "-" + max);
+        }
+        this.minPerWeekday = min;
+        this.maxPerWeekday = max;
+        this.maxPerWeekendDay = Math.max(1, max / 10);
+    }
+
+    /**
+     * Sets how often a weekday starts a trip blocking several whole days.
+     *
+     * @param oneIn the trip chance as one in this many weekdays, or 0 for no trips
+     */
+    public void setTripFrequency(int oneIn) {
+        if (oneIn < 0) {
+            throw new IllegalArgumentException("Invalid trip frequency: " + oneIn);
+        }
+        this.tripOneIn = oneIn;
+    }
+
+    /**
+     * Sets the lengths events are drawn from. Each entry is equally likely, so repeating a
+     * length makes it more common.
+     *
+     * @param minutes the event lengths in minutes, each at most nine hours
+     */
+    public void setDurations(int... minutes) {
+        for (int duration : minutes) {
+            if (duration <= 0 || duration > 9 * 60) {
+                throw new IllegalArgumentException("Invalid duration: " + duration);
+            }
+        }
+        if (minutes.length == 0) {
+            throw new IllegalArgumentException("At least one duration is required");
+        }
+        this.durations = minutes.clone();
+    }
+
+    /**
+     * Sets the titles events are given, each equally likely.
+     *
+     * @param titles the titles
+     */
+    public void setTitles(String... titles) {
+        if (titles.length == 0) {
+            throw new IllegalArgumentException("At least one title is required");
+        }
+        this.titles = titles.clone();
+    }
+
+    /**
+     * Sets the locations events are held at, each equally likely.
+     *
+     * @param locations the locations
+     */
+    public void setLocations(String... locations) {
+        if (locations.length == 0) {
+            throw new IllegalArgumentException("At least one location is required");
+        }
+        this.locations = locations.clone();
+    }
+
+    /**
+     * Returns the titles events are given.
+     *
+     * @return the titles
+     */
+    public String[] getTitles() {
+        return titles.clone();
+    }
+
+    /**
+     * Returns the locations events are held at.
+     *
+     * @return the locations
+     */
+    public String[] getLocations() {
+        return locations.clone();
+    }
+
+    /**
+     * Returns the start of the day after today in the calendar's millisecond ordinal, so events
+     * generated from it have not ended yet and stay active.
+     *
+     * @return the next midnight
+     */
+    public static long nextMidnight() {
+        long now = LocalDateTime.now().toInstant(ZoneOffset.UTC).toEpochMilli();
+        return Math.floorDiv(now, MILLIS_PER_DAY) * MILLIS_PER_DAY + MILLIS_PER_DAY;
+    }
+
+    /**
+     * Generates the given number of non-overlapping events in start-time order.
+     *
+     * @param count the number of events
+     * @return the events
+     */
+    public List<EventSpec> generate(int count) {
+        Random random = new Random(seed);
+        List<EventSpec> events = new ArrayList<>(count);
+        long day = Math.floorDiv(originMillis, MILLIS_PER_DAY);
+        while (events.size() < count) {
+            long midnight = day * MILLIS_PER_DAY;
+            // 1970-01-01 was a Thursday
+            boolean weekend = Math.floorMod(day + 3, 7) >= 5;
+            if (!weekend && tripOneIn > 0 && random.nextInt(tripOneIn) == 0) {
+                int days = 2 + random.nextInt(4);
+                events.add(event(random, TRIPS[random.nextInt(TRIPS.length)],
+                        midnight + 9 * 60 * MILLIS_PER_MINUTE,
+                        midnight + (days - 1) * MILLIS_PER_DAY + 17 * 60 * MILLIS_PER_MINUTE));
+                day += days;
+                continue;
+            }
+            int minute = WORK_START_MINUTE + 5 * random.nextInt(6);
+            int budget = weekend ? random.nextInt(maxPerWeekendDay + 1)
+                    : minPerWeekday + random.nextInt(maxPerWeekday - minPerWeekday + 1);
+            for (int i = 0; i < budget && events.size() < count; i++) {
+                int duration = durations[random.nextInt(durations.length)];
+                if (minute + duration > WORK_END_MINUTE) {
+                    break;
+                }
+                events.add(event(random, titles[random.nextInt(titles.length)],
+                        midnight + minute * MILLIS_PER_MINUTE, midnight + (minute + duration) * MILLIS_PER_MINUTE));
+                minute += duration + MIN_GAP_MINUTES + 5 * random.nextInt(4);
+            }
+            day++;
+        }
+        return events;
+    }
+
+    private EventSpec event(Random random, String title, long start, long end) {
+        return new EventSpec(title, start, end, locations[random.nextInt(locations.length)],
+                new UUID(random.nextLong(), random.nextLong()).toString(),
+                DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)], PRIORITIES[random.nextInt(PRIORITIES.length)]);
+    }
+
+    /**
+     * Generates events that start at exactly the same time as existing ones, as happens when two
+     * people book the same slot. The calendar rejects all of them.
+     *
+     * @param existing the generated events, in start-time order
+     * @param count    the number of colliding events
+     * @return the colliding events, each with a new ID
+     */
+    public List<EventSpec> collisions(List<EventSpec> existing, int count) {
+        Random random = new Random(seed + 1);
+        List<EventSpec> collisions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            EventSpec target = existing.get(random.nextInt(existing.size()));
+            collisions.add(event(random, titles[random.nextInt(titles.length)], target.getStartMillis(),
+                    target.getStartMillis() + durations[random.nextInt(durations.length)] * MILLIS_PER_MINUTE));
+        }
+        return collisions;
+    }
+
+    /**
+     * Generates short events that each fit into a free gap between existing events, spread over
+     * the whole range, so every one of them can be added on its own.
+     *
+     * @param existing the generated events, in start-time order
+     * @param count    the number of insertable events
+     * @return the insertable events, each with a new ID
+     */
+    public List<EventSpec> insertions(List<EventSpec> existing, int count) {
+        Random random = new Random(seed + 2);
+        List<EventSpec> insertions = new ArrayList<>(count);
+        long length = MIN_GAP_MINUTES * MILLIS_PER_MINUTE;
+        while (insertions.size() < count) {
+            int index = random.nextInt(existing.size() - 1);
+            long freeFrom = existing.get(index).getEndMillis() + length;
+            if (existing.get(index + 1).getStartMillis() - freeFrom > 2 * length) {
+                insertions.add(event(random, titles[random.nextInt(titles.length)], freeFrom, freeFrom + length));
+            }
+        }
+        return insertions;
+    }
+}
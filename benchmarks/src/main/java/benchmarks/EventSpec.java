@@ -0,0 +1,75 @@
+package benchmarks;
+
+/**
+ * The fields of one generated event, kept apart from the application's {@code Event} class
+ * so the generator can live in a named package. Times are in the calendar's timezone-neutral
+ * milliseconds since 1970-01-01T00:00.
+ */
+public final class EventSpec {
+    private final String title;
+    private final long startMillis;
+    private final long endMillis;
+    private final String location;
+    private final String id;
+    private final String description;
+    private final String priority;
+
+    /**
+     * Constructs an event specification.
+     *
+     * @param title       the title of the event
+     * @param startMillis the start time in milliseconds since 1970-01-01T00:00
+     * @param endMillis   the end time in milliseconds since 1970-01-01T00:00
+     * @param location    the location of the event
+     * @param id          the unique identifier for the event
+     * @param description a description of the event
+     * @param priority    the priority label of the event
+     */
+    public EventSpec(String title, long startMillis, long endMillis, String location, String id, String description, String priority) {
+        this.title = title;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.location = location;
+        this.id = id;
+        this.description = description;
+        this.priority = priority;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns a copy of this event moved in time by the given amount.
+     *
+     * @param millis the amount to move by, which should be whole weeks to keep the weekly pattern
+     * @return the moved event
+     */
+    public EventSpec shiftedBy(long millis) {
+        return new EventSpec(title, startMillis + millis, endMillis + millis, location, id, description, priority);
+    }
+}
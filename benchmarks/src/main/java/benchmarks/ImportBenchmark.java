@@ -0,0 +1,84 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading {@link #size} events, in random order, into a calendar already holding as
+ * many: once as a single {@code addEvents} batch and once through {@code addEvent} calls one at
+ * a time. Every tenth event of the batch clashes with one already loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class ImportBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<EventSpec> loaded;
+    private List<EventSpec> batch;
+    private CalendarDriver calendar;
+    private List<Object> events;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        EventGenerator generator = new EventGenerator(42, EventGenerator.nextMidnight());
+        List<EventSpec> specs = new ArrayList<>(generator.generate(2 * size));
+        Collections.shuffle(specs, new Random(42));
+        loaded = specs.subList(0, size);
+        batch = new ArrayList<>(specs.subList(size, 2 * size));
+        List<EventSpec> collisions = generator.collisions(loaded, size / 10);
+        for (int i = 0; i < collisions.size(); i++) {
+            batch.set(i * 10, collisions.get(i));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        calendar = CalendarDriver.create();
+        List<Object> existing = new ArrayList<>(size);
+        for (EventSpec spec : loaded) {
+            existing.add(calendar.newEvent(spec));
+        }
+        calendar.addEvents(existing);
+        events = new ArrayList<>(size);
+        for (EventSpec spec : batch) {
+            events.add(calendar.newEvent(spec));
+        }
+    }
+
+    @Benchmark
+    public int addEventsInBulk() {
+        return calendar.addEvents(events);
+    }
+
+    @Benchmark
+    public int addEventsOneByOne() {
+        int added = 0;
+        for (Object event : events) {
+            if (calendar.addEvent(event)) {
+                added++;
+            }
+        }
+        return added;
+    }
+}
@@ -0,0 +1,148 @@
+package benchmarks;
+
+import java.io.PrintStream;
+
+/**
+ * Records latencies in nanoseconds into log-linear buckets, in the manner of HdrHistogram: every
+ * power of two is split into 64 equal steps, so any recorded value is kept to within 1/64 of
+ * itself (better than two significant digits) in a fixed 30 KB whatever the range. Recording
+ * is a few shifts and an array increment and never allocates.
+ * <p>
+ * Not thread-safe; each thread records into its own histogram and they are merged with
+ * {@link #add(LatencyHistogram)} when the run is over.
+ * </p>
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    /** Enough buckets for any non-negative long. */
+    private static final int LENGTH = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF;
+
+    private final long[] counts = new long[LENGTH];
+    private long totalCount;
+    private long max;
+    private double sum;
+    private double sumOfSquares;
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds; negative values are recorded as 0
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        totalCount++;
+        max = Math.max(max, value);
+        sum += value;
+        sumOfSquares += (double) value * value;
+    }
+
+    /**
+     * Adds every latency recorded by another histogram to this one.
+     *
+     * @param other the histogram to add
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < LENGTH; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    /**
+     * Returns the largest value that falls into the same bucket as the values at an index.
+     */
+    private static long highestEquivalent(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long lowest = (long) ((index - SUB_BUCKETS) % HALF + HALF) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    double getStdDeviation() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double mean = getMean();
+        return Math.sqrt(Math.max(0, sumOfSquares / totalCount - mean * mean));
+    }
+
+    /**
+     * Returns the value at or below which the given share of the recorded latencies fall.
+     *
+     * @param percentile the share, from 0 to 100
+     * @return the latency in nanoseconds, or 0 if nothing was recorded
+     */
+    long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Prints the percentile distribution in HdrHistogram's text format, so the output can be
+     * plotted with the usual HdrHistogram tools. Percentiles are reported more densely towards
+     * the tail: each halving of the remaining distance to 100% gets the same number of rows.
+     *
+     * @param out   the destination
+     * @param scale the unit to print values in, as nanoseconds per unit
+     */
+    void printPercentileDistribution(PrintStream out, double scale) {
+        out.printf("%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+        if (totalCount > 0) {
+            final int ticksPerHalf = 5;
+            double percentile = 0;
+            while (true) {
+                long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+                long value = getValueAtPercentile(percentile);
+                if (rank >= totalCount || value >= max) {
+                    out.printf("%12.3f %2.12f %10d%n", max / scale, 1.0, totalCount);
+                    break;
+                }
+                out.printf("%12.3f %2.12f %10d %14.2f%n", value / scale, percentile / 100, rank, 1 / (1 - percentile / 100));
+                double remaining = 100 - percentile;
+                double halving = Math.pow(2, Math.floor(Math.log(100 / remaining) / Math.log(2)) + 1);
+                percentile += 100 / halving / ticksPerHalf;
+            }
+        }
+        out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", getMean() / scale, getStdDeviation() / scale);
+        out.printf("#[Max     = %12.3f, Total count    = %12d]%n", max / scale, totalCount);
+        out.printf("#[Buckets = %12d, SubBuckets     = %12d]%n", 64 - SUB_BUCKET_BITS + 1, SUB_BUCKETS);
+    }
+}
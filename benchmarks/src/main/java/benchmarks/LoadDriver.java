@@ -0,0 +1,270 @@
+package benchmarks;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a {@link Workload} against a calendar from several threads without the user interface
+ * and reports the latency of each kind of operation.
+ * <p>
+ * In closed-loop mode, the default, each thread starts its next operation as soon as the last
+ * one returns, which finds the highest throughput the calendar sustains. With {@code --rate}
+ * the threads instead start operations on a fixed schedule, and each latency is measured from
+ * when the operation was due rather than when it began. An operation delayed behind a slow one
+ * therefore counts its wait, as it would for a real user, instead of hiding it.
+ * </p>
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.LoadDriver --events 100000 --threads 4 --duration 30
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.LoadDriver --rate 2000 --mix add=20,search=60,sort=5,summary=5,refresh=10
+ * </pre>
+ */
+public class LoadDriver {
+    private static final double NANOS_PER_MICRO = 1_000;
+
+    private int events = 100_000;
+    private int additions = -1;
+    private int threads = 4;
+    private double rate;
+    private int warmupSeconds = 5;
+    private int durationSeconds = 30;
+    private long seed = 42;
+    private int[] weights = {10, 50, 10, 10, 20};
+    private int eventsPerWeekdayMin = 4;
+    private int eventsPerWeekdayMax = 12;
+    private boolean histograms;
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadDriver driver = new LoadDriver();
+        try {
+            driver.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage(System.err);
+            System.exit(1);
+            return;
+        }
+        driver.run(System.out);
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Options:");
+        out.println("  --events N          events loaded before the run (default 100000)");
+        out.println("  --additions N       further events kept for additions (default: enough for the run)");
+        out.println("  --threads N         threads issuing operations (default 4)");
+        out.println("  --rate N            operations per second across all threads; closed loop if omitted");
+        out.println("  --warmup S          seconds run before recording (default 5)");
+        out.println("  --duration S        seconds recorded (default 30)");
+        out.println("  --mix op=W,...      relative weights of add, search, sort, summary and refresh");
+        out.println("                      (default add=10,search=50,sort=10,summary=10,refresh=20)");
+        out.println("  --density MIN-MAX   events per weekday (default 4-12)");
+        out.println("  --seed N            seed for the generated events and operations (default 42)");
+        out.println("  --histograms        also print the full latency distribution of each operation");
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--histograms")) {
+                histograms = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--events":
+                        events = Integer.parseInt(value);
+                        break;
+                    case "--additions":
+                        additions = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--rate":
+                        rate = Double.parseDouble(value);
+                        break;
+                    case "--warmup":
+                        warmupSeconds = Integer.parseInt(value);
+                        break;
+                    case "--duration":
+                        durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--mix":
+                        weights = parseMix(value);
+                        break;
+                    case "--density":
+                        String[] range = value.split("-", 2);
+                        eventsPerWeekdayMin = Integer.parseInt(range[0]);
+                        eventsPerWeekdayMax = Integer.parseInt(range[range.length - 1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+        }
+        if (events < 2 || threads < 1 || rate < 0 || warmupSeconds < 0 || durationSeconds < 1) {
+            throw new IllegalArgumentException("Option out of range");
+        }
+    }
+
+    private static int[] parseMix(String mix) {
+        int[] parsed = new int[Workload.Operation.values().length];
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            try {
+                parsed[Workload.Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)).ordinal()] = Integer.parseInt(pair[1].trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+        }
+        return parsed;
+    }
+
+    private void run(PrintStream out) throws InterruptedException {
+        EventGenerator generator = new EventGenerator(seed, EventGenerator.nextMidnight());
+        generator.setEventsPerWeekday(eventsPerWeekdayMin, eventsPerWeekdayMax);
+        if (additions < 0) {
+            // Enough for every addition a run at the requested rate, or a fast closed loop, could make
+            double expected = (rate > 0 ? rate : 100_000) * (warmupSeconds + durationSeconds);
+            additions = (int) Math.min(expected * weights[0] / sum(weights), 10_000_000);
+        }
+
+        CalendarDriver calendar = CalendarDriver.create();
+        long started = System.nanoTime();
+        Workload workload = new Workload(calendar, generator, events, additions, weights, seed);
+        int loaded = workload.load();
+        out.printf("Loaded %d events in %.1f s%n", loaded, (System.nanoTime() - started) / 1e9);
+        out.printf("%s, %d threads, %d s warmup, %d s measured%n%n",
+                rate > 0 ? String.format("Fixed rate of %.0f ops/s", rate) : "Closed loop", threads, warmupSeconds, durationSeconds);
+
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(workload, i, start, recordFrom, end);
+            workers.add(worker);
+            worker.start();
+        }
+
+        LatencyHistogram[] merged = newHistograms();
+        for (Worker worker : workers) {
+            worker.join();
+            for (int i = 0; i < merged.length; i++) {
+                merged[i].add(worker.histograms[i]);
+            }
+        }
+        report(out, merged, calendar.getEventCount());
+    }
+
+    private static int sum(int[] values) {
+        int total = 0;
+        for (int value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[Workload.Operation.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    private void report(PrintStream out, LatencyHistogram[] merged, int finalEvents) {
+        LatencyHistogram all = new LatencyHistogram();
+        out.printf("%-10s %10s %10s %12s %12s %12s %12s %12s%n",
+                "Operation", "Count", "Ops/s", "Mean (us)", "p50 (us)", "p99 (us)", "p999 (us)", "Max (us)");
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            LatencyHistogram histogram = merged[operation.ordinal()];
+            all.add(histogram);
+            printRow(out, operation.label(), histogram);
+        }
+        printRow(out, "all", all);
+        out.printf("%nEvents at end: %d%n", finalEvents);
+
+        if (histograms) {
+            for (Workload.Operation operation : Workload.Operation.values()) {
+                if (merged[operation.ordinal()].getTotalCount() > 0) {
+                    out.printf("%n# %s latency (us)%n", operation.label());
+                    merged[operation.ordinal()].printPercentileDistribution(out, NANOS_PER_MICRO);
+                }
+            }
+        }
+    }
+
+    private void printRow(PrintStream out, String label, LatencyHistogram histogram) {
+        out.printf("%-10s %10d %10.0f %12.1f %12.1f %12.1f %12.1f %12.1f%n", label, histogram.getTotalCount(),
+                histogram.getTotalCount() / (double) durationSeconds, histogram.getMean() / NANOS_PER_MICRO,
+                histogram.getValueAtPercentile(50) / NANOS_PER_MICRO, histogram.getValueAtPercentile(99) / NANOS_PER_MICRO,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MICRO, histogram.getMax() / NANOS_PER_MICRO);
+    }
+
+    /**
+     * One thread of the run, recording into its own histograms.
+     */
+    private class Worker extends Thread {
+        private final Workload workload;
+        private final Random random;
+        private final long start;
+        private final long recordFrom;
+        private final long end;
+        private final long interval;
+        private final LatencyHistogram[] histograms = newHistograms();
+        private Object sink;
+
+        Worker(Workload workload, int index, long start, long recordFrom, long end) {
+            super("load-" + index);
+            this.workload = workload;
+            this.random = new Random(seed + index);
+            this.interval = rate > 0 ? (long) (threads * 1e9 / rate) : 0;
+            // Stagger the threads so a fixed rate is spread evenly rather than issued in bursts
+            this.start = start + (interval * index) / threads;
+            this.recordFrom = recordFrom;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            long due = start;
+            while (true) {
+                long now = System.nanoTime();
+                if (interval > 0) {
+                    if (due > now) {
+                        LockSupport.parkNanos(due - now);
+                        continue;
+                    }
+                } else {
+                    due = now;
+                }
+                if (due >= end) {
+                    break;
+                }
+                Workload.Operation operation = workload.next(random);
+                sink = workload.run(operation, random);
+                if (due >= recordFrom) {
+                    histograms[operation.ordinal()].record(System.nanoTime() - due);
+                }
+                due += interval;
+            }
+        }
+    }
+}
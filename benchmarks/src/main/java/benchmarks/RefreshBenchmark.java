@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code refreshEvents} archiving a backlog: about half of the {@link #size} events have
+ * already ended when it runs. Archiving consumes the backlog, so every measurement refreshes a
+ * freshly built calendar once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class RefreshBenchmark {
+    private static final long MILLIS_PER_WEEK = 7 * EventGenerator.MILLIS_PER_DAY;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<EventSpec> specs;
+    private CalendarDriver calendar;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        List<EventSpec> generated = new EventGenerator(42, EventGenerator.nextMidnight()).generate(size);
+        // Move whole weeks back so the middle event starts in the past, keeping the weekly pattern
+        long middle = generated.get(size / 2).getStartMillis();
+        long shift = -((middle - EventGenerator.nextMidnight()) / MILLIS_PER_WEEK + 1) * MILLIS_PER_WEEK;
+        specs = new ArrayList<>(size);
+        for (EventSpec spec : generated) {
+            specs.add(spec.shiftedBy(shift));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        calendar = CalendarDriver.create();
+        for (EventSpec spec : specs) {
+            calendar.addEvent(calendar.newEvent(spec));
+        }
+    }
+
+    @Benchmark
+    public int refreshEvents() {
+        calendar.refreshEvents();
+        return calendar.getEventCount();
+    }
+}
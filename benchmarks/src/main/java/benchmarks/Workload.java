@@ -0,0 +1,176 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A seeded mix of calendar operations replayed against one calendar, modelled on how people
+ * use it: searches by part of a title or location, or by day; sorts by any attribute; weekly
+ * summaries; periodic refreshes; and additions, most of which fit while some clash with an
+ * existing event. Every choice is drawn from a {@link Random} the caller supplies, so each
+ * thread of a run can replay its own reproducible sequence.
+ */
+class Workload {
+    /**
+     * The kinds of operation a workload mixes.
+     */
+    enum Operation {
+        ADD, SEARCH, SORT, SUMMARY, REFRESH;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    private static final String[] SORT_ATTRIBUTES = {"date", "title", "priority"};
+    /** One in this many additions reuses the start of an existing event and is rejected. */
+    private static final int COLLISION_ONE_IN = 10;
+
+    private final CalendarDriver calendar;
+    private final int[] cumulativeWeights;
+    private final List<Object> preloaded;
+    private final Object[] additions;
+    private final Object[] collisions;
+    private final String[] titles;
+    private final String[] locations;
+    private final long firstDay;
+    private final int days;
+    private final AtomicInteger nextAddition = new AtomicInteger();
+
+    /**
+     * Prepares a workload. The generator's events are split at random into the ones loaded up
+     * front by {@link #load()} and the ones later added by {@link Operation#ADD}, so additions
+     * land all over the calendar rather than only at its end.
+     *
+     * @param calendar  the calendar to run against
+     * @param generator the source of events
+     * @param events    how many events to load up front
+     * @param additions how many more events to keep for additions; once used up, additions only clash
+     * @param weights   the relative frequency of each operation, indexed by ordinal
+     * @param seed      the seed for the split between loaded and added events
+     */
+    Workload(CalendarDriver calendar, EventGenerator generator, int events, int additions, int[] weights, long seed) {
+        if (weights.length != Operation.values().length) {
+            throw new IllegalArgumentException("Expected a weight for each of " + Operation.values().length + " operations");
+        }
+        this.calendar = calendar;
+        this.cumulativeWeights = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("Negative weight for " + Operation.values()[i].label());
+            }
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one operation needs a positive weight");
+        }
+
+        List<EventSpec> specs = generator.generate(events + additions);
+        List<EventSpec> shuffled = new ArrayList<>(specs);
+        Collections.shuffle(shuffled, new Random(seed));
+        this.preloaded = new ArrayList<>(events);
+        for (EventSpec spec : shuffled.subList(0, events)) {
+            preloaded.add(calendar.newEvent(spec));
+        }
+        this.additions = shuffled.subList(events, shuffled.size()).stream().map(calendar::newEvent).toArray();
+        this.collisions = generator.collisions(specs, 1024).stream().map(calendar::newEvent).toArray();
+        this.titles = generator.getTitles();
+        this.locations = generator.getLocations();
+        this.firstDay = Math.floorDiv(specs.get(0).getStartMillis(), EventGenerator.MILLIS_PER_DAY);
+        this.days = (int) (Math.floorDiv(specs.get(specs.size() - 1).getStartMillis(), EventGenerator.MILLIS_PER_DAY) - firstDay + 1);
+    }
+
+    /**
+     * Adds the events to be loaded up front to the calendar.
+     *
+     * @return the number of events added
+     */
+    int load() {
+        int added = 0;
+        for (Object event : preloaded) {
+            if (calendar.addEvent(event)) {
+                added++;
+            }
+        }
+        preloaded.clear();
+        return added;
+    }
+
+    /**
+     * Picks the next operation according to the weights.
+     *
+     * @param random the source of randomness of the calling thread
+     * @return the operation
+     */
+    Operation next(Random random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (pick >= cumulativeWeights[i]) {
+            i++;
+        }
+        return Operation.values()[i];
+    }
+
+    /**
+     * Runs one operation with arguments drawn at random.
+     *
+     * @param operation the operation to run
+     * @param random    the source of randomness of the calling thread
+     * @return the result, so it is not optimized away
+     */
+    Object run(Operation operation, Random random) {
+        switch (operation) {
+            case ADD:
+                return calendar.addEvent(nextAddition(random));
+            case SEARCH:
+                return search(random);
+            case SORT:
+                return calendar.sortEvents(SORT_ATTRIBUTES[random.nextInt(SORT_ATTRIBUTES.length)]);
+            case SUMMARY:
+                LocalDate start = randomDay(random);
+                return calendar.generateSummary(start, start.plusDays(6));
+            default:
+                calendar.refreshEvents();
+                return null;
+        }
+    }
+
+    private Object nextAddition(Random random) {
+        if (random.nextInt(COLLISION_ONE_IN) != 0) {
+            int index = nextAddition.getAndIncrement();
+            if (index < additions.length) {
+                return additions[index];
+            }
+        }
+        return collisions[random.nextInt(collisions.length)];
+    }
+
+    /**
+     * Searches by part of a known title or location, as typed into the search box, or by day.
+     */
+    private List<?> search(Random random) {
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return calendar.viewEvents("date", randomDay(random).format(DATE));
+        }
+        boolean byTitle = kind <= 6;
+        String[] vocabulary = byTitle ? titles : locations;
+        String word = vocabulary[random.nextInt(vocabulary.length)].toLowerCase(Locale.ROOT);
+        int length = Math.min(word.length(), 3 + random.nextInt(6));
+        int from = random.nextInt(word.length() - length + 1);
+        return calendar.viewEvents(byTitle ? "title" : "location", word.substring(from, from + length));
+    }
+
+    private LocalDate randomDay(Random random) {
+        return LocalDate.ofEpochDay(firstDay + random.nextInt(days));
+    }
+}
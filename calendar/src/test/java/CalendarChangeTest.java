@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.swing.event.TableModelEvent;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Replays random edits through the changes a calendar publishes, into a mirror list and the
+ * two table models the GUI keeps, and checks each against the calendar.
+ */
+class CalendarChangeTest {
+
+    @Test
+    void deltasReproduceTheCalendar() {
+        Random random = new Random(9);
+        Calendar calendar = new Calendar();
+        LocalDateTime base = LocalDateTime.now().minusHours(2).withSecond(0).withNano(0);
+
+        List<Event> mirror = new ArrayList<>();
+        List<CalendarChange> pending = new ArrayList<>();
+        calendar.addCalendarListener(changes -> {
+            pending.addAll(changes);
+            for (CalendarChange change : changes) {
+                switch (change.getType()) {
+                    case ADDED:
+                        mirror.add(change.getIndex(), change.getEvent());
+                        break;
+                    case UPDATED:
+                        assertSame(change.getPreviousEvent(), mirror.remove(change.getPreviousIndex()));
+                        mirror.add(change.getIndex(), change.getEvent());
+                        break;
+                    default:
+                        assertSame(change.getEvent(), mirror.remove(change.getIndex()), change.toString());
+                }
+            }
+        });
+
+        // The dashboard reads rows from the version its applied changes lead to, as the GUI does
+        CalendarVersion[] shown = {calendar.getVersion()};
+        EventTableModel live = new EventTableModel(new EventTableModel.Rows() {
+            @Override
+            public int size() {
+                return shown[0].getEventCount();
+            }
+
+            @Override
+            public Event get(int row) {
+                return shown[0].getEventAt(row);
+            }
+        }, EventTableModel.Column.values());
+        EventTableModel sorted = new EventTableModel(EventTableModel.Column.values());
+        sorted.setEvents(calendar.sortEvents("title"), Calendar.sortOrder("title"));
+        int[] rows = {0};
+        live.addTableModelListener(e -> {
+            if (e.getType() == TableModelEvent.INSERT) {
+                rows[0] += e.getLastRow() - e.getFirstRow() + 1;
+            } else if (e.getType() == TableModelEvent.DELETE) {
+                rows[0] -= e.getLastRow() - e.getFirstRow() + 1;
+            } else if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getLastRow() == Integer.MAX_VALUE) {
+                rows[0] = live.getRowCount();
+            }
+        });
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 5 || ids.isEmpty()) {
+                LocalDateTime start = base.plusMinutes(random.nextInt(20_000) - 100);
+                Event event = new Event("Title " + random.nextInt(50), start, start.plusMinutes(1 + random.nextInt(60)), "", "id" + i, "", "High");
+                if (calendar.addEvent(event)) {
+                    ids.add(event.getId());
+                }
+            } else if (operation < 7) {
+                calendar.removeEventById(ids.remove(random.nextInt(ids.size())));
+            } else if (operation < 9) {
+                String id = ids.get(random.nextInt(ids.size()));
+                Event old = calendar.getEventById(id);
+                if (old == null) {
+                    ids.remove(id); // Archived by a refresh
+                    continue;
+                }
+                LocalDateTime start = old.getStartTime().plusMinutes(random.nextInt(200) - 100);
+                calendar.updateEventById(id, new Event("Title " + random.nextInt(50), start, start.plusMinutes(30), "", id, "", "Low"));
+            } else {
+                calendar.refreshEvents();
+            }
+
+            if (random.nextInt(20) == 0 && !pending.isEmpty()) {
+                shown[0] = calendar.getVersion(pending.get(pending.size() - 1).getVersion());
+                assertNotNull(shown[0]);
+                live.applyChanges(pending);
+                sorted.applyChanges(pending);
+                pending.clear();
+
+                assertEquals(calendar.getEventCount(), rows[0]);
+                List<Event> events = new ArrayList<>(calendar.getEvents());
+                for (int row = 0; row < events.size(); row++) {
+                    assertSame(events.get(row), live.getEventAt(row));
+                }
+                List<Event> byTitle = calendar.sortEvents("title");
+                assertEquals(byTitle.size(), sorted.getRowCount());
+                for (int row = 0; row < byTitle.size(); row++) {
+                    assertSame(byTitle.get(row), sorted.getEventAt(row));
+                }
+            }
+        }
+        assertEquals(new ArrayList<>(calendar.getEvents()), mirror);
+    }
+}
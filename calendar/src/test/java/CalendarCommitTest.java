@@ -0,0 +1,175 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that with a store forcing every commit, writers that arrive during a force make their
+ * changes meanwhile, nobody else sees those changes before they are committed, and a failed
+ * force takes them back without leaving any of them on disk.
+ */
+class CalendarCommitTest {
+    private static final LocalDateTime START = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writersJoinAForceInProgress() throws Exception {
+        HeldStore store = new HeldStore(directory);
+        Calendar calendar = Calendar.open(store);
+        CountDownLatch release = store.hold(false);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<Boolean> first = executor.submit(() -> calendar.addEvent(event("first", 0)));
+            assertTrue(store.awaitCommit());
+            Future<Boolean> second = executor.submit(() -> calendar.addEvent(event("second", 2)));
+            assertTrue(store.awaitCommit(), "second writer waiting for a commit");
+
+            // Both changes are made, but neither is committed yet
+            assertEquals(0, calendar.getEventCount());
+            assertNull(calendar.getEventById("first"));
+            Future<Boolean> reader = executor.submit(calendar::canUndo);
+            Thread.sleep(100);
+            assertFalse(reader.isDone());
+
+            release.countDown();
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertTrue(second.get(5, TimeUnit.SECONDS));
+            assertTrue(reader.get(5, TimeUnit.SECONDS));
+            assertEquals(2, calendar.getEventCount());
+        } finally {
+            executor.shutdownNow();
+            calendar.close();
+        }
+    }
+
+    @Test
+    void failedForceRevertsTheUncommittedChanges() throws Exception {
+        HeldStore store = new HeldStore(directory);
+        Calendar calendar = Calendar.open(store);
+        Event kept = event("kept", 4);
+        assertTrue(calendar.addEvent(kept));
+        List<CalendarChange> seen = new ArrayList<>();
+        calendar.addCalendarListener(seen::addAll);
+
+        CountDownLatch release = store.hold(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> add = executor.submit(() -> calendar.addEvent(event("added", 0)));
+            assertTrue(store.awaitCommit());
+            Future<Boolean> remove = executor.submit(() -> calendar.removeEventById("kept"));
+            assertTrue(store.awaitCommit());
+            release.countDown();
+
+            for (Future<Boolean> writer : Arrays.asList(add, remove)) {
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> writer.get(5, TimeUnit.SECONDS));
+                assertTrue(failure.getCause() instanceof UncheckedIOException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, calendar.getEventCount());
+        assertNull(calendar.getEventById("added"));
+        assertNotNull(calendar.getEventById("kept"));
+        assertEquals(1, calendar.viewEvents("title", "kept").size());
+        assertTrue(seen.isEmpty());
+        // Undoing the reverted removal finds the event still there and drops the edit
+        assertFalse(calendar.undo());
+    }
+
+    @Test
+    void failedForceAfterARefreshThatSpillsLeavesNothingSpilled() throws Exception {
+        HeldStore store = new HeldStore(directory);
+        Calendar calendar = Calendar.open(store, 2);
+        LocalDateTime past = LocalDateTime.now().minusDays(10).withSecond(0).withNano(0);
+        for (int day = 0; day < 5; day++) {
+            LocalDateTime start = past.plusDays(day);
+            assertTrue(calendar.addEvent(new Event("Past " + day, start, start.plusHours(1), "", "past" + day, "", "Low")));
+        }
+
+        // Archiving all five would spill the oldest four, if the archive record were committed
+        store.hold(true).countDown();
+        assertThrows(UncheckedIOException.class, calendar::refreshEvents);
+
+        assertEquals(5, calendar.getEventCount());
+        assertTrue(calendar.getHistoryEvents().isEmpty());
+        LocalDate from = past.toLocalDate();
+        assertEquals(5, calendar.getStatistics(from, from.plusDays(5)).getEventCount());
+    }
+
+    private static Event event(String id, int hour) {
+        return new Event(id, START.plusHours(hour), START.plusHours(hour + 1), "", id, "", "Medium");
+    }
+
+    /**
+     * A store whose commits can be held back until released, and then made to fail along with
+     * the force that starts a snapshot.
+     */
+    private static final class HeldStore extends CalendarStore {
+        private final Semaphore waiting = new Semaphore(0);
+        private volatile CountDownLatch release;
+        private volatile boolean fail;
+
+        HeldStore(Path directory) throws IOException {
+            super(directory, FsyncPolicy.ALWAYS, 50, 100_000);
+        }
+
+        CountDownLatch hold(boolean fail) {
+            this.fail = fail;
+            release = new CountDownLatch(1);
+            return release;
+        }
+
+        boolean awaitCommit() throws InterruptedException {
+            return waiting.tryAcquire(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        void commit(long sequence) throws IOException {
+            CountDownLatch held = release;
+            if (held != null) {
+                waiting.release();
+                try {
+                    held.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                if (fail) {
+                    throw new IOException("Simulated failure to force the log");
+                }
+            }
+            super.commit(sequence);
+        }
+
+        @Override
+        void snapshot(List<Event> active, List<Event> history) throws IOException {
+            if (release != null && fail) {
+                throw new IOException("Simulated failure to force the log before a snapshot");
+            }
+            super.snapshot(active, history);
+        }
+    }
+}
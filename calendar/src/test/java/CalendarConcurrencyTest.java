@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs a writer thread against readers of positions, sorts, searches, history and range
+ * iterators, as the GUI's background workers do, and checks that every read is consistent.
+ */
+class CalendarConcurrencyTest {
+    private static final Comparator<Event> TIME_ORDER = Calendar.sortOrder("date");
+    private static final Comparator<Event> TITLE_ORDER = Calendar.sortOrder("title");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readersSeeConsistentStateWhileAWriterRuns() throws Exception {
+        Calendar calendar = Calendar.open(new CalendarStore(directory, FsyncPolicy.NEVER, 50, 100_000), 200);
+        LocalDateTime base = LocalDateTime.now().minusDays(100).withSecond(0).withNano(0);
+        LocalDate from = base.toLocalDate();
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            tasks.add(executor.submit(() -> {
+                try {
+                    Random random = new Random(16);
+                    for (int i = 0; i < 20_000; i++) {
+                        LocalDateTime start = base.plusMinutes(random.nextInt(300_000));
+                        calendar.addEvent(new Event("Title " + random.nextInt(100), start, start.plusMinutes(5), "", "id" + i, "", "High"));
+                        if (i % 3 == 0) {
+                            calendar.removeEventById("id" + random.nextInt(i + 1));
+                        }
+                        if (i % 500 == 0) {
+                            calendar.refreshEvents(); // Archives and, past 200 past events, spills
+                        }
+                    }
+                } finally {
+                    stop.set(true);
+                }
+                return null;
+            }));
+            tasks.add(executor.submit(() -> {
+                while (!stop.get()) {
+                    CalendarVersion version = calendar.getVersion();
+                    List<Event> events = new ArrayList<>(version.getEvents());
+                    assertEquals(events.size(), version.getEventCount());
+                    for (int i = 1; i < events.size(); i++) {
+                        assertTrue(events.get(i - 1).getEndMillis() <= events.get(i).getStartMillis(), "active events overlap");
+                    }
+                    if (!events.isEmpty()) {
+                        int middle = events.size() / 2;
+                        assertSame(events.get(middle), version.getEventAt(middle));
+                        assertEquals(middle, version.indexOfEvent(events.get(middle).getId()));
+                    }
+                    int count = calendar.getEventCount();
+                    if (count > 0) {
+                        try {
+                            calendar.getEventAt(count / 2);
+                        } catch (IndexOutOfBoundsException e) {
+                            // The writer removed events since the count was read
+                        }
+                    }
+                }
+                return null;
+            }));
+            tasks.add(executor.submit(() -> {
+                while (!stop.get()) {
+                    assertOrdered(calendar.sortEvents("title"), TITLE_ORDER, false);
+                    List<Event> matches = calendar.viewEvents("title", "Title 7");
+                    assertOrdered(matches, TIME_ORDER, true);
+                    for (Event event : matches) {
+                        assertTrue(event.getTitle().contains("Title 7"), event.getTitle());
+                    }
+                }
+                return null;
+            }));
+            tasks.add(executor.submit(() -> {
+                while (!stop.get()) {
+                    List<Event> history = new ArrayList<>();
+                    calendar.forEachHistoryEvent(history::add);
+                    assertOrdered(history, TIME_ORDER, true);
+                    Iterator<Event> range = calendar.eventsInRange(from, from.plusDays(300));
+                    Event previous = null;
+                    while (range.hasNext()) {
+                        Event event = range.next();
+                        assertTrue(previous == null || previous.getStartMillis() <= event.getStartMillis(), "range out of order");
+                        previous = event;
+                    }
+                }
+                return null;
+            }));
+            for (Future<?> task : tasks) {
+                task.get(5, TimeUnit.MINUTES); // Rethrows whatever a reader or the writer failed on
+            }
+        } finally {
+            stop.set(true);
+            executor.shutdownNow();
+            calendar.close();
+        }
+    }
+
+    /**
+     * Checks that a list follows an order, strictly if no two elements may compare equal.
+     */
+    private static void assertOrdered(List<Event> events, Comparator<Event> order, boolean strictly) {
+        for (int i = 1; i < events.size(); i++) {
+            int comparison = order.compare(events.get(i - 1), events.get(i));
+            assertTrue(strictly ? comparison < 0 : comparison <= 0, "out of order at " + i + ": " + events.get(i));
+        }
+    }
+}
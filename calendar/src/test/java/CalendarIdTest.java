@@ -0,0 +1,39 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that an event without an ID is rejected alike by single and batch adds, and that
+ * lookups by a null ID find nothing instead of failing.
+ */
+class CalendarIdTest {
+
+    @Test
+    void eventWithoutIdIsNeverAdded() {
+        Calendar calendar = new Calendar();
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        Event unnamed = new Event("Unnamed", start, start.plusHours(1), "", null, "", "Low");
+
+        assertFalse(calendar.addEvent(unnamed));
+        ImportReport report = calendar.addEvents(Collections.singletonList(unnamed), ImportPolicy.SKIP_CONFLICTS);
+        assertEquals(0, report.getAddedCount());
+        assertEquals(ImportReport.Reason.MISSING_ID, report.getConflicts().get(0).getReason());
+        assertEquals(0, calendar.getEventCount());
+    }
+
+    @Test
+    void nullIdFindsNothing() {
+        Calendar calendar = new Calendar();
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        calendar.addEvent(new Event("Named", start, start.plusHours(1), "", "named", "", "Low"));
+
+        assertNull(calendar.getEventById(null));
+        assertFalse(calendar.removeEventById(null));
+        assertFalse(calendar.updateEventById(null, new Event("Unnamed", start, start.plusHours(1), "", null, "", "Low")));
+        assertEquals(1, calendar.getEventCount());
+    }
+}
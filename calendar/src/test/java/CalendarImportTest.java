@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that importing events already in the history, in memory or spilled to disk, adds
+ * nothing, as when a file of ended events is read again.
+ */
+class CalendarImportTest {
+    private static final int EVENTS = 300;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void pastEventsAreNotAddedAgain() throws Exception {
+        LocalDateTime base = LocalDateTime.now().minusDays(400).withSecond(0).withNano(0);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            LocalDateTime start = base.plusDays(i);
+            events.add(new Event("Past " + i, start, start.plusHours(1), "", "past" + i, "", "Low"));
+        }
+        LocalDate from = base.toLocalDate();
+        LocalDate to = from.plusDays(EVENTS);
+
+        // With a limit of 100, the oldest past events are spilled and the newest stay in memory
+        Calendar calendar = Calendar.open(new CalendarStore(directory, FsyncPolicy.NEVER, 50, 100_000), 100);
+        try {
+            assertEquals(EVENTS, calendar.addEvents(events).getAddedCount());
+            calendar.refreshEvents();
+            assertEquals(0, calendar.getEventCount());
+
+            ImportReport again = calendar.addEvents(events, ImportPolicy.SKIP_CONFLICTS);
+            assertEquals(0, again.getAddedCount());
+            for (ImportReport.Conflict conflict : again.getConflicts()) {
+                assertEquals(ImportReport.Reason.DUPLICATE_ID, conflict.getReason());
+            }
+            assertEquals(EVENTS, again.getConflicts().size());
+
+            calendar.refreshEvents();
+            List<Event> history = new ArrayList<>();
+            calendar.forEachHistoryEvent(history::add);
+            assertEquals(events, history);
+            assertEquals(EVENTS, calendar.getStatistics(from, to).getEventCount());
+        } finally {
+            calendar.close();
+        }
+    }
+
+    @Test
+    void sameIdAtAnotherTimeIsStillAdded() {
+        Calendar calendar = new Calendar();
+        LocalDateTime past = LocalDateTime.now().minusDays(2).withSecond(0).withNano(0);
+        Event ended = new Event("Ended", past, past.plusHours(1), "", "reused", "", "Low");
+        assertEquals(1, calendar.addEvents(Collections.singletonList(ended)).getAddedCount());
+        calendar.refreshEvents();
+
+        LocalDateTime future = past.plusDays(4);
+        Event next = new Event("Next", future, future.plusHours(1), "", "reused", "", "Low");
+        assertEquals(1, calendar.addEvents(Collections.singletonList(next)).getAddedCount());
+    }
+}
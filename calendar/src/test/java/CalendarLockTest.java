@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the guarantees of the calendar's lock when threads share a calendar: a conflict check
+ * and the insert it allows are one step, and steady readers cannot starve a writer.
+ */
+class CalendarLockTest {
+    private static final int THREADS = 4;
+    private static final int SLOTS = 5000;
+
+    @Test
+    void racingAddsNeverDoubleBookASlot() throws Exception {
+        Calendar calendar = new Calendar();
+        LocalDateTime origin = LocalDateTime.now().plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+        Event[][] candidates = new Event[THREADS][SLOTS];
+        for (int t = 0; t < THREADS; t++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                // Each thread's candidate is shifted a little, so they overlap rather than coincide
+                LocalDateTime start = origin.plusHours(2L * slot).plusMinutes(t);
+                candidates[t][slot] = new Event("Slot " + slot, start, start.plusMinutes(30), "Room " + t, "slot-" + slot + "-" + t, "", "Medium");
+            }
+        }
+
+        AtomicIntegerArray winners = new AtomicIntegerArray(SLOTS);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Event[] mine = candidates[t];
+                List<Integer> order = new ArrayList<>(SLOTS);
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    order.add(slot);
+                }
+                Collections.shuffle(order, new Random(t));
+                workers.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int slot : order) {
+                        if (calendar.addEvent(mine[slot])) {
+                            winners.incrementAndGet(slot);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            assertEquals(1, winners.get(slot), "events added to slot " + slot);
+        }
+        assertEquals(SLOTS, calendar.getEventCount());
+    }
+
+    @Test
+    void readersDoNotStarveAWriter() throws Exception {
+        Calendar calendar = new Calendar();
+        LocalDateTime origin = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        for (int i = 0; i < 10_000; i++) {
+            LocalDateTime start = origin.plusMinutes(10L * i);
+            calendar.addEvent(new Event("Review " + i, start, start.plusMinutes(5), "", "id" + i, "", "Low"));
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int t = 0; t < THREADS - 1; t++) {
+                Random random = new Random(t);
+                executor.submit(() -> {
+                    while (!stop.get()) {
+                        calendar.getEventAt(random.nextInt(calendar.getEventCount()));
+                        calendar.getEventById("id" + random.nextInt(10_000));
+                        calendar.viewEvents("title", "review 1");
+                    }
+                    return null;
+                });
+            }
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    LocalDateTime start = origin.plusMinutes(10L * i + 6);
+                    Event event = new Event("Inserted", start, start.plusMinutes(2), "", "inserted" + i, "", "High");
+                    assertTrue(calendar.addEvent(event));
+                    assertTrue(calendar.removeEventById(event.getId()));
+                }
+                return null;
+            });
+            // Without the writer turnstile, steady readers held the writer to about one write a second
+            writer.get(2, TimeUnit.MINUTES);
+        } finally {
+            stop.set(true);
+            executor.shutdownNow();
+        }
+    }
+}
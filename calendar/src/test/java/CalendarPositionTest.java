@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the positional lookups of a calendar, getEventAt and indexOfEvent, under random adds and removes.
+ */
+class CalendarPositionTest {
+
+    @Test
+    void rankAndSelectMatchStartTimeOrder() {
+        Random random = new Random(4);
+        Calendar calendar = new Calendar();
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        Map<String, Event> expected = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            if (random.nextInt(3) > 0 || ids.isEmpty()) {
+                LocalDateTime start = base.plusMinutes(random.nextInt(10_000_000));
+                Event event = new Event("Event " + i, start, start.plusMinutes(5), "", "id" + i, "", "High");
+                if (calendar.addEvent(event)) {
+                    expected.put(event.getId(), event);
+                    ids.add(event.getId());
+                }
+            } else {
+                String id = ids.remove(random.nextInt(ids.size()));
+                assertTrue(calendar.removeEventById(id));
+                expected.remove(id);
+            }
+            if (i % 1000 == 0) {
+                checkPositions(calendar, expected);
+            }
+        }
+        checkPositions(calendar, expected);
+    }
+
+    @Test
+    void outOfRange() {
+        Calendar calendar = new Calendar();
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        calendar.addEvent(new Event("Only", start, start.plusHours(1), "", "only", "", "Low"));
+
+        assertEquals(0, calendar.indexOfEvent("only"));
+        assertEquals(-1, calendar.indexOfEvent("missing"));
+        assertThrows(IndexOutOfBoundsException.class, () -> calendar.getEventAt(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> calendar.getEventAt(-1));
+    }
+
+    private static void checkPositions(Calendar calendar, Map<String, Event> expected) {
+        List<Event> events = new ArrayList<>(calendar.getEvents());
+        assertEquals(expected.size(), events.size());
+        assertEquals(expected.size(), calendar.getEventCount());
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            assertSame(expected.get(event.getId()), event);
+            assertTrue(i == 0 || events.get(i - 1).getStartMillis() <= event.getStartMillis(), "start-time order at " + i);
+            assertSame(event, calendar.getEventAt(i));
+            assertEquals(i, calendar.indexOfEvent(event.getId()));
+        }
+    }
+}
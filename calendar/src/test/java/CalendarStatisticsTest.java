@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the incremental statistics of a calendar against totals computed from its events by brute force.
+ */
+class CalendarStatisticsTest {
+    private static final String[] PRIORITIES = {"High", "Medium", "Low", "Someday", null};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void matchesBruteForceAcrossSpillsAndReopen() throws Exception {
+        Random random = new Random(2);
+        LocalDateTime base = LocalDateTime.now().minusDays(400).withSecond(0).withNano(0);
+        Map<String, Event> expected = new HashMap<>();
+
+        Calendar calendar = Calendar.open(new CalendarStore(directory, FsyncPolicy.NEVER, 50, 100_000), 100);
+        for (int i = 0; i < 3000; i++) {
+            LocalDateTime start = base.plusMinutes(random.nextInt(600_000));
+            LocalDateTime end = start.plusMinutes(1 + random.nextInt(i % 50 == 0 ? 30_000 : 300));
+            Event event = new Event("Event " + i, start, end, "Room", "id" + i, null, PRIORITIES[random.nextInt(PRIORITIES.length)]);
+            if (calendar.addEvent(event)) {
+                expected.put(event.getId(), event);
+            }
+            if (i % 7 == 0) {
+                String id = "id" + random.nextInt(i + 1);
+                if (calendar.getEventById(id) != null && calendar.removeEventById(id)) {
+                    expected.remove(id);
+                }
+            }
+            if (i % 200 == 0) {
+                calendar.refreshEvents(); // Archives what has ended, which spills past the limit of 100
+            }
+        }
+        calendar.refreshEvents();
+        checkRanges(calendar, new ArrayList<>(expected.values()), random, base.toLocalDate());
+        calendar.close();
+
+        Calendar reopened = Calendar.open(new CalendarStore(directory, FsyncPolicy.NEVER, 50, 100_000), 100);
+        try {
+            checkRanges(reopened, new ArrayList<>(expected.values()), random, base.toLocalDate());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void scatteredDatesAcrossCenturies() {
+        Random random = new Random(3);
+        Calendar calendar = new Calendar();
+        List<Event> expected = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        for (int i = 0; i < 2000; i++) {
+            LocalDateTime start = base.plusMinutes(random.nextInt(60)).plusDays(random.nextInt(80_000));
+            Event event = new Event("Event " + i, start, start.plusMinutes(random.nextInt(600)), "", "id" + i, "", PRIORITIES[i % PRIORITIES.length]);
+            if (calendar.addEvent(event)) {
+                expected.add(event);
+            }
+        }
+        LocalDate from = base.toLocalDate();
+        checkRange(calendar, expected, from, from.plusDays(80_000));
+        checkRanges(calendar, expected, random, from);
+    }
+
+    private static void checkRanges(Calendar calendar, List<Event> events, Random random, LocalDate base) {
+        for (int k = 0; k < 40; k++) {
+            LocalDate from = base.plusDays(random.nextInt(500));
+            checkRange(calendar, events, from, from.plusDays(random.nextInt(200)));
+        }
+    }
+
+    private static void checkRange(Calendar calendar, List<Event> events, LocalDate from, LocalDate to) {
+        long count = 0;
+        long booked = 0;
+        long[] priorities = new long[Priority.values().length + 1];
+        long[] heatmap = new long[7 * 24];
+        for (Event event : events) {
+            LocalDate day = event.getStartTime().toLocalDate();
+            if (day.isBefore(from) || day.isAfter(to)) {
+                continue;
+            }
+            count++;
+            booked += event.getEndMillis() - event.getStartMillis();
+            Priority priority = event.getPriorityLevel();
+            priorities[priority == null ? Priority.values().length : priority.ordinal()]++;
+            for (LocalDateTime time = event.getStartTime(); time.isBefore(event.getEndTime()); time = time.plusMinutes(1)) {
+                heatmap[(time.getDayOfWeek().getValue() - 1) * 24 + time.getHour()] += 60_000;
+            }
+        }
+
+        EventStatistics statistics = calendar.getStatistics(from, to);
+        assertEquals(count, statistics.getEventCount(), "count from " + from + " to " + to);
+        assertEquals(booked, statistics.getBookedMillis(), "booked time from " + from + " to " + to);
+        for (Priority priority : Priority.values()) {
+            assertEquals(priorities[priority.ordinal()], statistics.getCount(priority), priority.getLabel());
+        }
+        assertEquals(priorities[Priority.values().length], statistics.getCount(null), "unknown priority");
+        for (DayOfWeek day : DayOfWeek.values()) {
+            for (int hour = 0; hour < 24; hour++) {
+                assertEquals(heatmap[(day.getValue() - 1) * 24 + hour], statistics.getBookedMillis(day, hour), day + " " + hour);
+            }
+        }
+        assertEquals(count, total(calendar.countEvents(from, to, ChronoUnit.DAYS)));
+        assertEquals(count, total(calendar.countEvents(from, to, ChronoUnit.WEEKS)));
+        assertEquals(count, total(calendar.countEvents(from, to, ChronoUnit.MONTHS)));
+    }
+
+    private static long total(Map<LocalDate, Long> counts) {
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,139 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that recovery never applies a log record on top of a state missing an earlier one:
+ * a damaged record or a missing log ends the replay, and what follows is set aside.
+ */
+class CalendarStoreTest {
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 7, 9, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void damagedRecordEndsTheReplay() throws IOException {
+        // wal-1 holds a and b, wal-2 holds c
+        writeLog("a", "b");
+        writeLog("c");
+        assertEquals(Arrays.asList("a", "b", "c"), recover());
+
+        // Damage the last byte of b, the last record of wal-1
+        try (RandomAccessFile log = new RandomAccessFile(directory.resolve("wal-1.log").toFile(), "rw")) {
+            log.seek(log.length() - 1);
+            int last = log.read();
+            log.seek(log.length() - 1);
+            log.write(last ^ 0xFF);
+        }
+        assertEquals(Arrays.asList("a"), recover());
+        assertTrue(isSetAside("wal-2.log"));
+
+        // The truncated log is intact now, and new logs carry on from it
+        writeLog("d");
+        assertEquals(Arrays.asList("a", "d"), recover());
+    }
+
+    @Test
+    void missingLogEndsTheReplay() throws IOException {
+        writeLog("a");
+        writeLog("b");
+        // As when the snapshot that covered wal-1 is lost after wal-1 was deleted
+        Files.delete(directory.resolve("wal-1.log"));
+        assertEquals(new ArrayList<String>(), recover());
+        assertTrue(isSetAside("wal-2.log"));
+    }
+
+    @Test
+    void halfWrittenSnapshotsAreDeleted() throws IOException {
+        Path temp = Files.write(directory.resolve("snapshot-4.tmp"), new byte[] {1, 2, 3});
+        recover();
+        assertFalse(Files.exists(temp));
+    }
+
+    /**
+     * Checks whether recovery has set a log aside.
+     */
+    private boolean isSetAside(String log) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.anyMatch(file -> file.getFileName().toString().startsWith(log + ".skipped"));
+        }
+    }
+
+    /**
+     * Recovers the store, then logs an event with each of the given IDs to the fresh log.
+     */
+    private void writeLog(String... ids) throws IOException {
+        CalendarStore store = new CalendarStore(directory, FsyncPolicy.NEVER, 50, 100_000);
+        try {
+            store.recover(new Added(new ArrayList<>()));
+            for (String id : ids) {
+                store.logAdd(new Event("Event " + id, START, START.plusHours(1), "", id, "", "High"));
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Recovers the store and returns the IDs of the events it replayed, in order.
+     */
+    private List<String> recover() throws IOException {
+        List<String> ids = new ArrayList<>();
+        CalendarStore store = new CalendarStore(directory, FsyncPolicy.NEVER, 50, 100_000);
+        try {
+            store.recover(new Added(ids));
+        } finally {
+            store.close();
+        }
+        return ids;
+    }
+
+    /**
+     * Collects the IDs of the added events; these tests log nothing else.
+     */
+    private static final class Added implements CalendarStore.Replay {
+        private final List<String> ids;
+
+        Added(List<String> ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public void add(Event event) {
+            ids.add(event.getId());
+        }
+
+        @Override
+        public void remove(String id) {
+            throw new AssertionError("unexpected remove of " + id);
+        }
+
+        @Override
+        public void update(Event event) {
+            throw new AssertionError("unexpected update of " + event.getId());
+        }
+
+        @Override
+        public void archive(String id) {
+            throw new AssertionError("unexpected archive of " + id);
+        }
+
+        @Override
+        public void restoreHistory(Event event) {
+            throw new AssertionError("unexpected past event " + event.getId());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks how batches of added events interact with undo and redo.
+ */
+class CalendarUndoTest {
+
+    @Test
+    void appliedBatchDiscardsRedo() {
+        Calendar calendar = new Calendar();
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        Event single = new Event("Single", start, start.plusHours(1), "", "single", "", "High");
+        assertTrue(calendar.addEvent(single));
+        assertTrue(calendar.undo());
+        assertTrue(calendar.canRedo());
+
+        // Takes the slot the undone event held, so redoing that add would double-book it
+        Event imported = new Event("Imported", start, start.plusHours(1), "", "imported", "", "Low");
+        ImportReport report = calendar.addEvents(Collections.singletonList(imported), ImportPolicy.SKIP_CONFLICTS);
+
+        assertEquals(1, report.getAddedCount());
+        assertFalse(calendar.canRedo());
+        assertFalse(calendar.redo());
+        assertNull(calendar.getEventById("single"));
+    }
+
+    @Test
+    void rejectedBatchKeepsRedo() {
+        Calendar calendar = new Calendar();
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        assertTrue(calendar.addEvent(new Event("Kept", start, start.plusHours(1), "", "kept", "", "High")));
+        assertTrue(calendar.addEvent(new Event("Undone", start.plusHours(2), start.plusHours(3), "", "undone", "", "High")));
+        assertTrue(calendar.undo());
+
+        Event clashing = new Event("Clashing", start, start.plusMinutes(30), "", "clashing", "", "Low");
+        ImportReport report = calendar.addEvents(Collections.singletonList(clashing), ImportPolicy.ALL_OR_NOTHING);
+
+        assertEquals(0, report.getAddedCount());
+        assertTrue(calendar.canRedo());
+    }
+}
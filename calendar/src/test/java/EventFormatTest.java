@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the allocation-free writers in {@link EventFormat} against the formatters they replace.
+ */
+class EventFormatTest {
+    private static final int TIMES = 200_000;
+
+    @Test
+    void tableMatchesFormatter() {
+        Random random = new Random(11);
+        for (int i = 0; i < TIMES; i++) {
+            LocalDateTime time = randomTime(random);
+            assertEquals(time.format(EventFormat.TABLE), EventFormat.table(Calendar.epochMillis(time)));
+        }
+    }
+
+    @Test
+    void toStringMatchesFormatter() {
+        Random random = new Random(12);
+        for (int i = 0; i < TIMES; i++) {
+            LocalDateTime start = randomTime(random);
+            LocalDateTime end = start.plusMinutes(random.nextInt(100_000));
+            String title = i % 7 == 0 ? null : "Title " + i;
+            Event event = new Event(title, start, end, "Room", "id" + i, null, "High");
+            String expected = String.format("Event Title: %s\nStart Time: %s\nEnd Time: %s\nLocation: %s\nID: %s\nDescription: %s\nPriority: %s\n",
+                    title, start.format(EventFormat.DISPLAY), end.format(EventFormat.DISPLAY), "Room", "id" + i, null, "High");
+            assertEquals(expected, event.toString());
+        }
+    }
+
+    @Test
+    void boundariesOfTheDay() {
+        LocalDateTime day = LocalDateTime.of(2024, 2, 29, 0, 0);
+        for (int minute = 0; minute < 24 * 60; minute++) {
+            LocalDateTime time = day.plusMinutes(minute);
+            StringBuilder display = new StringBuilder();
+            assertEquals(time.format(EventFormat.TABLE), EventFormat.table(Calendar.epochMillis(time)));
+            assertEquals(time.format(EventFormat.DISPLAY), appendDisplay(display, time).toString());
+        }
+    }
+
+    private static StringBuilder appendDisplay(StringBuilder out, LocalDateTime time) {
+        try {
+            EventFormat.appendDisplay(out, Calendar.epochMillis(time));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out;
+    }
+
+    /** Returns a random minute in the years 1 to 9998, which the formats print as four digits. */
+    private static LocalDateTime randomTime(Random random) {
+        return LocalDateTime.of(1 + random.nextInt(9998), 1, 1, 0, 0).plusMinutes(random.nextInt(525_600));
+    }
+}
@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that events inserted into a loaded history land in start-time order exactly once.
+ */
+class EventListModelTest {
+    private static final Comparator<Event> ORDER = Calendar.sortOrder("date");
+
+    @Test
+    void insertSortedKeepsOrderAndSkipsShownEvents() {
+        Random random = new Random(15);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+        List<Event> all = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            LocalDateTime start = base.plusMinutes(random.nextInt(100_000));
+            all.add(new Event("Event " + i, start, start.plusMinutes(30), "", "id" + i, "", "Low"));
+        }
+        List<Event> loaded = new ArrayList<>(all.subList(0, 1500));
+        loaded.sort(ORDER);
+
+        EventListModel model = new EventListModel();
+        int[] rows = new int[1];
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                rows[0] += e.getIndex1() - e.getIndex0() + 1;
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                rows[0] -= e.getIndex1() - e.getIndex0() + 1;
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+            }
+        });
+        model.append(loaded);
+
+        // Archived while loading: some were read by the load too, and they arrive in any order
+        List<Event> archived = new ArrayList<>(all.subList(1200, 2000));
+        Collections.shuffle(archived, random);
+        model.insertSorted(archived, ORDER);
+        model.insertSorted(Arrays.asList(all.get(0), all.get(1999)), ORDER);
+
+        List<Event> expected = new ArrayList<>(all);
+        expected.sort(ORDER);
+        assertEquals(expected, model.getEvents());
+        assertEquals(expected.size(), rows[0]);
+    }
+
+    @Test
+    void insertSortedIntoReplacedList() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        Event first = new Event("First", start, start.plusHours(1), "", "a", "", "High");
+        Event second = new Event("Second", start.plusHours(2), start.plusHours(3), "", "b", "", "High");
+        List<Event> shown = Collections.unmodifiableList(Collections.singletonList(second));
+
+        EventListModel model = new EventListModel();
+        model.setEvents(shown);
+        model.insertSorted(Collections.singletonList(first), ORDER);
+
+        assertEquals(Arrays.asList(first, second), model.getEvents());
+        assertEquals(Collections.singletonList(second), shown);
+    }
+}